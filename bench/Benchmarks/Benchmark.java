@@ -0,0 +1,48 @@
+package Benchmarks;
+
+import java.util.LinkedHashMap;
+
+// One thing for BenchmarkRunner to measure, with one set of parameters.
+// run() is the only part that gets timed. Whatever it returns is kept, so the JIT can't decide the work was useless.
+public abstract class Benchmark {
+    private final String name;
+    private final LinkedHashMap<String, String> params = new LinkedHashMap<>();
+
+    // Params come in pairs: "board", "expert", "mode", "BACKTRACKING", ...
+    protected Benchmark(String name, Object... params) {
+        if (params.length % 2 != 0) throw new IllegalArgumentException("Params have to come in name/value pairs");
+        this.name = name;
+        for (int i = 0; i < params.length; i += 2) this.params.put(params[i].toString(), params[i + 1].toString());
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public LinkedHashMap<String, String> getParams() {
+        return params;
+    }
+
+    // Everything that only has to happen once, before any timing starts
+    public void setup() throws Exception {
+    }
+
+    // Whether run() changes something that has to be put back before it can run again (a board that got revealed,
+    // mines that got placed). If so, reset() gets called before every run(), and each run() is timed on its own.
+    public boolean resetsEachRun() {
+        return false;
+    }
+
+    public void reset() throws Exception {
+    }
+
+    public abstract Object run() throws Exception;
+
+    @Override
+    public String toString() {
+        if (params.isEmpty()) return name;
+        StringBuilder ret = new StringBuilder(name).append(" (");
+        params.forEach((key, value) -> ret.append(ret.charAt(ret.length() - 1) == '(' ? "" : ", ").append(key).append('=').append(value));
+        return ret.append(')').toString();
+    }
+}
@@ -0,0 +1,183 @@
+package Benchmarks;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.Map;
+
+// Measures throughput (ops/s) and allocation per op, roughly the way JMH does it in throughput mode:
+// a few warmup iterations that don't count, then a few measured ones, each running the benchmark over and over for
+// a fixed time. The score is the mean over the measured iterations, with a 99.9% confidence interval.
+// Allocations come from the JVM's per-thread allocation counter, so they're exact but include anything the JIT
+// didn't manage to scalar-replace.
+// Everything runs in this JVM, one benchmark after another, so earlier benchmarks can affect the JIT profile of later
+// ones. Use the filter to run just the ones you care about when the numbers have to be precise.
+public class BenchmarkRunner {
+    private int warmupIterations = 3;
+    private int measurementIterations = 5;
+    private long iterationTime = 1_000_000_000L; // ns
+
+    private final com.sun.management.ThreadMXBean threadBean;
+    private volatile Object sink; // Where run() results go to not be optimised away
+
+    public BenchmarkRunner() {
+        threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (threadBean.isThreadAllocatedMemorySupported()) threadBean.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    public void setWarmupIterations(int iterations) {
+        warmupIterations = iterations;
+    }
+
+    public void setMeasurementIterations(int iterations) {
+        if (iterations < 1) throw new IllegalArgumentException("Need at least one measured iteration");
+        measurementIterations = iterations;
+    }
+
+    public void setIterationMillis(long millis) {
+        if (millis < 1) throw new IllegalArgumentException("Iterations have to take at least a millisecond");
+        iterationTime = millis * 1_000_000;
+    }
+
+    public Result run(Benchmark benchmark) throws Exception {
+        benchmark.setup();
+        for (int i = 0; i < warmupIterations; i++) runIteration(benchmark);
+
+        double[] scores = new double[measurementIterations];
+        long totalOps = 0, totalBytes = 0;
+        for (int i = 0; i < measurementIterations; i++) {
+            Iteration iteration = runIteration(benchmark);
+            scores[i] = iteration.ops * 1e9 / iteration.nanos;
+            totalOps += iteration.ops;
+            totalBytes += iteration.allocatedBytes;
+        }
+        return new Result(benchmark, scores, threadBean.isThreadAllocatedMemoryEnabled() ? (double) totalBytes / totalOps : Double.NaN);
+    }
+
+    // Runs the benchmark for iterationTime. Only time and allocations spent inside run() count.
+    private Iteration runIteration(Benchmark benchmark) throws Exception {
+        Iteration iteration = new Iteration();
+        if (!benchmark.resetsEachRun()) {
+            long bytesBefore = threadBean.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            long now;
+            do {
+                sink = benchmark.run();
+                iteration.ops++;
+                now = System.nanoTime();
+            } while (now - start < iterationTime);
+            iteration.nanos = now - start;
+            iteration.allocatedBytes = threadBean.getCurrentThreadAllocatedBytes() - bytesBefore;
+            return iteration;
+        }
+
+        // Every run() needs a fresh start, so time them one by one and leave the resets out.
+        // Resets can take longer than the runs themselves, so give up on filling the iteration after a while.
+        long wallStart = System.nanoTime();
+        do {
+            benchmark.reset();
+            long bytesBefore = threadBean.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            sink = benchmark.run();
+            iteration.nanos += System.nanoTime() - start;
+            iteration.allocatedBytes += threadBean.getCurrentThreadAllocatedBytes() - bytesBefore;
+            iteration.ops++;
+        } while (iteration.nanos < iterationTime && System.nanoTime() - wallStart < iterationTime * 10);
+        return iteration;
+    }
+
+    private static class Iteration {
+        long ops, nanos, allocatedBytes;
+    }
+
+    //region Results
+
+    public static class Result {
+        public final Benchmark benchmark;
+        public final double score; // ops/s
+        public final double error; // Half the width of the 99.9% confidence interval, NaN with only one iteration
+        public final double allocatedBytesPerOp; // NaN if the JVM can't count allocations
+
+        public Result(Benchmark benchmark, double[] scores, double allocatedBytesPerOp) {
+            this.benchmark = benchmark;
+            this.allocatedBytesPerOp = allocatedBytesPerOp;
+
+            double mean = 0;
+            for (double s : scores) mean += s;
+            mean /= scores.length;
+            score = mean;
+
+            if (scores.length < 2) error = Double.NaN;
+            else {
+                double variance = 0;
+                for (double s : scores) variance += (s - mean) * (s - mean);
+                variance /= scores.length - 1;
+                error = studentT999(scores.length - 1) * Math.sqrt(variance / scores.length);
+            }
+        }
+    }
+
+    // Two sided 99.9% quantiles of Student's t distribution, for the error bars
+    private static final double[] T_999 = {636.619, 31.599, 12.924, 8.610, 6.869, 5.959, 5.408, 5.041, 4.781, 4.587,
+            4.437, 4.318, 4.221, 4.140, 4.073, 4.015, 3.965, 3.922, 3.883, 3.850};
+
+    private static double studentT999(int degreesOfFreedom) {
+        if (degreesOfFreedom <= T_999.length) return T_999[degreesOfFreedom - 1];
+        return 3.291; // Close enough to the normal distribution from here on
+    }
+
+    // A table in the spirit of JMH's, one line per benchmark
+    public static String formatTable(ArrayList<Result> results) {
+        int nameWidth = "Benchmark".length();
+        for (Result result : results) nameWidth = Math.max(nameWidth, result.benchmark.toString().length());
+
+        StringBuilder table = new StringBuilder();
+        table.append(String.format(Locale.ROOT, "%-" + nameWidth + "s  %14s  %12s  %14s%n", "Benchmark", "Score", "Error", "B/op"));
+        for (Result result : results) {
+            table.append(String.format(Locale.ROOT, "%-" + nameWidth + "s  %14.3f  %12s  %14.1f%n", result.benchmark, result.score,
+                    Double.isNaN(result.error) ? "" : String.format(Locale.ROOT, "+- %.3f", result.error), result.allocatedBytesPerOp));
+        }
+        table.append("Score is ops/s, error is the 99.9% confidence interval\n");
+        return table.toString();
+    }
+
+    // Same layout as JMH's JSON output (the fields that apply), so the usual tools can read it
+    public static void writeJson(ArrayList<Result> results, Path path) throws IOException {
+        StringBuilder json = new StringBuilder("[\n");
+        for (int i = 0; i < results.size(); i++) {
+            Result result = results.get(i);
+            json.append("  {\n");
+            json.append("    \"benchmark\": \"").append(result.benchmark.getName()).append("\",\n");
+            json.append("    \"mode\": \"thrpt\",\n");
+            json.append("    \"params\": {");
+            int param = 0;
+            for (Map.Entry<String, String> entry : result.benchmark.getParams().entrySet()) {
+                json.append(param++ == 0 ? "" : ", ").append('"').append(entry.getKey()).append("\": \"").append(entry.getValue()).append('"');
+            }
+            json.append("},\n");
+            json.append("    \"primaryMetric\": {\n");
+            json.append(String.format(Locale.ROOT, "      \"score\": %s,\n", jsonNumber(result.score)));
+            json.append(String.format(Locale.ROOT, "      \"scoreError\": %s,\n", jsonNumber(result.error)));
+            json.append("      \"scoreUnit\": \"ops/s\"\n");
+            json.append("    },\n");
+            json.append("    \"secondaryMetrics\": {\n");
+            json.append("      \"gc.alloc.rate.norm\": {\n");
+            json.append(String.format(Locale.ROOT, "        \"score\": %s,\n", jsonNumber(result.allocatedBytesPerOp)));
+            json.append("        \"scoreUnit\": \"B/op\"\n");
+            json.append("      }\n");
+            json.append("    }\n");
+            json.append(i == results.size() - 1 ? "  }\n" : "  },\n");
+        }
+        json.append("]\n");
+        Files.writeString(path, json.toString());
+    }
+
+    private static String jsonNumber(double value) {
+        return Double.isNaN(value) ? "\"NaN\"" : String.format(Locale.ROOT, "%.6f", value);
+    }
+
+    //endregion
+}
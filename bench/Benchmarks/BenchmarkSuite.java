@@ -0,0 +1,55 @@
+package Benchmarks;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.regex.Pattern;
+
+// Runs every benchmark (or the ones matching -f) and prints ops/s and allocations per op.
+// Usage: [-f regex] [-wi warmup iterations] [-i iterations] [-r ms per iteration] [-json report file] [-l]
+// The regex is matched against names like "Minefield.render (board=expert, canvas=512)"; -l just lists them.
+public class BenchmarkSuite {
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true"); // The render benchmarks draw offscreen
+
+        BenchmarkRunner runner = new BenchmarkRunner();
+        Pattern filter = null;
+        Path jsonPath = null;
+        boolean listOnly = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-f" -> filter = Pattern.compile(args[++i]);
+                case "-wi" -> runner.setWarmupIterations(Integer.parseInt(args[++i]));
+                case "-i" -> runner.setMeasurementIterations(Integer.parseInt(args[++i]));
+                case "-r" -> runner.setIterationMillis(Long.parseLong(args[++i]));
+                case "-json" -> jsonPath = Path.of(args[++i]);
+                case "-l" -> listOnly = true;
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        ArrayList<Benchmark> benchmarks = new ArrayList<>();
+        benchmarks.addAll(SolverBenchmarks.create());
+        benchmarks.addAll(FloodFillBenchmarks.create());
+        benchmarks.addAll(MinePlacementBenchmarks.create());
+        benchmarks.addAll(PermutationBenchmarks.create());
+        benchmarks.addAll(RenderBenchmarks.create());
+        if (filter != null) {
+            Pattern pattern = filter;
+            benchmarks.removeIf(benchmark -> !pattern.matcher(benchmark.toString()).find());
+        }
+
+        if (listOnly) {
+            for (Benchmark benchmark : benchmarks) System.out.println(benchmark);
+            return;
+        }
+
+        ArrayList<BenchmarkRunner.Result> results = new ArrayList<>();
+        for (Benchmark benchmark : benchmarks) {
+            System.out.println("Running " + benchmark + "...");
+            results.add(runner.run(benchmark));
+        }
+        System.out.println();
+        System.out.print(BenchmarkRunner.formatTable(results));
+        if (jsonPath != null) BenchmarkRunner.writeJson(results, jsonPath);
+    }
+}
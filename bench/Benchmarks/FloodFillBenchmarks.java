@@ -0,0 +1,43 @@
+package Benchmarks;
+
+import Game.MinefieldState;
+import Utils.Vector2Int;
+
+import java.util.ArrayList;
+
+// MinefieldState.visionSpreadProtocol() opening up a big region from the middle of a fresh board.
+// The mines leave a 3x3 free around the middle, so the start cell is always a 0.
+public class FloodFillBenchmarks {
+    private static final int[] SIZES = {256, 1024};
+    private static final double[] DENSITIES = {0, 0.01, 0.05};
+
+    public static ArrayList<Benchmark> create() {
+        ArrayList<Benchmark> benchmarks = new ArrayList<>();
+        for (int size : SIZES) {
+            for (double density : DENSITIES) {
+                benchmarks.add(new Benchmark("MinefieldState.visionSpreadProtocol", "size", size, "density", density) {
+                    private MinefieldState state;
+                    private final Vector2Int middle = new Vector2Int(size / 2, size / 2);
+
+                    @Override
+                    public boolean resetsEachRun() {
+                        return true;
+                    }
+
+                    @Override
+                    public void reset() {
+                        state = new MinefieldState(size, size, (int) (density * size * size));
+                        state.setUndoEnabled(false);
+                        state.spreadMines(1, middle.x, middle.y);
+                    }
+
+                    @Override
+                    public Object run() {
+                        return state.visionSpreadProtocol(middle);
+                    }
+                });
+            }
+        }
+        return benchmarks;
+    }
+}
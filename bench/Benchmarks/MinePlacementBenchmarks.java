@@ -0,0 +1,38 @@
+package Benchmarks;
+
+import Game.MinefieldState;
+
+import java.util.ArrayList;
+
+// MinefieldState.spreadMines() on an empty board, from nearly empty to nearly full
+public class MinePlacementBenchmarks {
+    private static final int SIZE = 512;
+    private static final double[] DENSITIES = {0.01, 0.1, 0.2, 0.5, 0.9};
+
+    public static ArrayList<Benchmark> create() {
+        ArrayList<Benchmark> benchmarks = new ArrayList<>();
+        for (double density : DENSITIES) {
+            benchmarks.add(new Benchmark("MinefieldState.spreadMines", "size", SIZE, "density", density) {
+                private MinefieldState state;
+                private long seed;
+
+                @Override
+                public boolean resetsEachRun() {
+                    return true;
+                }
+
+                @Override
+                public void reset() {
+                    state = new MinefieldState(SIZE, SIZE, (int) (density * SIZE * SIZE));
+                }
+
+                @Override
+                public Object run() {
+                    state.spreadMines(seed++, SIZE / 2, SIZE / 2);
+                    return state;
+                }
+            });
+        }
+        return benchmarks;
+    }
+}
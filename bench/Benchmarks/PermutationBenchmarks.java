@@ -0,0 +1,23 @@
+package Benchmarks;
+
+import Utils.TUtils;
+
+import java.util.ArrayList;
+
+// TUtils.permutations(), with all distinct letters and with repeats (which produce far fewer unique results)
+public class PermutationBenchmarks {
+    private static final String[] BASES = {"abcd", "abcdef", "abcdefgh", "aabbccdd"};
+
+    public static ArrayList<Benchmark> create() {
+        ArrayList<Benchmark> benchmarks = new ArrayList<>();
+        for (String base : BASES) {
+            benchmarks.add(new Benchmark("TUtils.permutations", "base", base) {
+                @Override
+                public Object run() {
+                    return TUtils.permutations(base);
+                }
+            });
+        }
+        return benchmarks;
+    }
+}
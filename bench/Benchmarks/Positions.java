@@ -0,0 +1,40 @@
+package Benchmarks;
+
+import AI.AutoPlayer;
+import Game.MinefieldState;
+
+import java.util.ArrayList;
+
+// Fixed, seeded boards for the benchmarks to work on, so every run measures exactly the same positions
+public class Positions {
+    public static final String[] BOARDS = {"beginner", "intermediate", "expert"};
+
+    // Width, height and mines of a named board
+    public static int[] size(String board) {
+        return switch (board) {
+            case "beginner" -> new int[]{9, 9, 10};
+            case "intermediate" -> new int[]{16, 16, 40};
+            case "expert" -> new int[]{30, 16, 99};
+            default -> throw new IllegalArgumentException("No board called " + board);
+        };
+    }
+
+    // Games in progress: the AI plays each seed for a few steps (2 to 5, depending on the seed) and the ones that are
+    // still going get kept. That gives a spread of openings and midgames, always with a frontier to work on.
+    public static MinefieldState[] create(String board, int count) {
+        int[] size = size(board);
+        ArrayList<MinefieldState> positions = new ArrayList<>();
+        AutoPlayer player = new AutoPlayer();
+        for (long seed = 0; positions.size() < count; seed++) {
+            MinefieldState state = new MinefieldState(size[0], size[1], size[2]);
+            state.setSeed(seed);
+            state.setUndoEnabled(false);
+            player.start(state);
+            for (int step = 0; step < 2 + seed % 4 && player.isPlaying(); step++) player.step();
+            if (!player.isPlaying()) continue; // Game's already over, nothing left to solve
+            player.stop();
+            positions.add(state);
+        }
+        return positions.toArray(new MinefieldState[0]);
+    }
+}
@@ -0,0 +1,38 @@
+package Benchmarks;
+
+import Engine.TCanvas;
+import Game.Minefield;
+
+import java.awt.*;
+import java.util.ArrayList;
+
+// A full Minefield.render() of a game in progress into an offscreen TCanvas. Nothing is shown on screen.
+public class RenderBenchmarks {
+    private static final int CANVAS_SIZE = 512;
+
+    public static ArrayList<Benchmark> create() {
+        ArrayList<Benchmark> benchmarks = new ArrayList<>();
+        for (String board : Positions.BOARDS) {
+            benchmarks.add(new Benchmark("Minefield.render", "board", board, "canvas", CANVAS_SIZE) {
+                private Minefield minefield;
+
+                @Override
+                public void setup() {
+                    TCanvas canvas = new TCanvas(CANVAS_SIZE, CANVAS_SIZE, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR, Color.WHITE);
+                    minefield = (Minefield) canvas.addRenderable(new Minefield(Positions.create(board, 1)[0]));
+                    minefield.rect.parent = canvas.rect;
+                    minefield.rect.setSize(CANVAS_SIZE, CANVAS_SIZE);
+                    minefield.rect.setLocalAnchorPos(0.5f, 0.5f);
+                    minefield.rect.setParentAnchorPos(0.5f, 0.5f);
+                }
+
+                @Override
+                public Object run() {
+                    minefield.render();
+                    return minefield;
+                }
+            });
+        }
+        return benchmarks;
+    }
+}
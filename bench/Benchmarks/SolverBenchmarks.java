@@ -0,0 +1,43 @@
+package Benchmarks;
+
+import AI.CaseworkAI;
+import Game.MinefieldState;
+
+import java.util.ArrayList;
+
+// CaseworkAI.determineProbabilities() on a corpus of fixed positions, one position per op (round robin).
+// Each op imports the board from scratch and the solution cache is off, so every op solves the whole thing.
+public class SolverBenchmarks {
+    private static final int POSITIONS = 16;
+
+    public static ArrayList<Benchmark> create() {
+        ArrayList<Benchmark> benchmarks = new ArrayList<>();
+        for (String board : Positions.BOARDS) {
+            for (CaseworkAI.SolverMode mode : CaseworkAI.SolverMode.values()) {
+                // The old enumeration keeps every layout in memory, which doesn't get anywhere on expert frontiers
+                if (mode == CaseworkAI.SolverMode.ENUMERATION && board.equals("expert")) continue;
+
+                benchmarks.add(new Benchmark("CaseworkAI.determineProbabilities", "board", board, "mode", mode) {
+                    private MinefieldState[] positions;
+                    private final CaseworkAI ai = new CaseworkAI();
+                    private int next;
+
+                    @Override
+                    public void setup() {
+                        positions = Positions.create(board, POSITIONS);
+                        ai.setSolverMode(mode);
+                        ai.getSolutionCache().setCapacity(0);
+                    }
+
+                    @Override
+                    public Object run() {
+                        ai.importGrid(positions[next]);
+                        next = (next + 1) % positions.length;
+                        return ai.determineProbabilities();
+                    }
+                });
+            }
+        }
+        return benchmarks;
+    }
+}
@@ -0,0 +1,295 @@
+package AI;
+
+import Game.MinefieldState;
+import Utils.Vector2Int;
+
+// Plays whole games with a CaseworkAI: solve, make every certain move at once, solve again, and so on until the game
+// is won or lost. When nothing is certain it reveals the tile least likely to hold a mine.
+// Either call play() to run a game start to finish, or start() it on a board and call tick() from a render loop,
+// which only takes a step once the step delay has passed. A delay of 0 plays as fast as the AI can go.
+public class AutoPlayer {
+    private final CaseworkAI ai;
+    private long stepDelay; // Nanoseconds between steps, 0 for unthrottled
+
+    private MinefieldState state; // Board being played, null when idle
+    private long gameStart, lastStep;
+    private int moves, guesses;
+    private long lastSolveTime; // Nanoseconds the last step spent in the AI, 0 if it didn't ask it
+
+    // Totals over every game finished so far
+    private long gamesPlayed, gamesWon, totalMoves, totalGuesses, totalPlayTime;
+
+    public AutoPlayer() {
+        this(new CaseworkAI());
+    }
+
+    public AutoPlayer(CaseworkAI ai) {
+        this.ai = ai;
+    }
+
+    public CaseworkAI getAI() {
+        return ai;
+    }
+
+    public long getStepDelayMillis() {
+        return stepDelay / 1_000_000;
+    }
+
+    // Shortest time between two steps, so a person can follow along. 0 plays unthrottled.
+    public void setStepDelayMillis(long millis) {
+        if (millis < 0) throw new IllegalArgumentException("Step delay can't be negative");
+        stepDelay = millis * 1_000_000;
+    }
+
+    //region Playing
+
+    // Plays the board until it's won or lost, sleeping between steps if there's a step delay
+    public GameResult play(MinefieldState minefield) throws InterruptedException {
+        start(minefield);
+        GameResult result = null;
+        while (result == null) {
+            if (stepDelay > 0) {
+                long wait = lastStep + stepDelay - System.nanoTime();
+                if (wait > 0) Thread.sleep(wait / 1_000_000, (int) (wait % 1_000_000));
+            }
+            result = step();
+        }
+        return result;
+    }
+
+    // Takes over the board. Nothing happens until step() or tick() gets called.
+    public void start(MinefieldState minefield) {
+        stop();
+        state = minefield;
+        moves = 0;
+        guesses = 0;
+        gameStart = System.nanoTime();
+        lastStep = gameStart - stepDelay; // The first tick() doesn't have to wait
+        ai.attach(minefield);
+    }
+
+    // Gives the board back without finishing the game. Doesn't count towards the statistics.
+    public void stop() {
+        if (state == null) return;
+        ai.detach();
+        state = null;
+    }
+
+    // Time the last step spent working out probabilities, 0 if it didn't need to (the opening click)
+    public long getLastSolveNanos() {
+        return lastSolveTime;
+    }
+
+    public boolean isPlaying() {
+        return state != null;
+    }
+
+    // Takes a step if a game is going and the step delay has passed. Returns the result once the game ends, else null.
+    public GameResult tick() {
+        if (state == null) return null;
+        if (System.nanoTime() - lastStep < stepDelay) return null;
+        return step();
+    }
+
+    // Makes every certain move, or one guess if there aren't any. Returns the result once the game ends, else null.
+    public GameResult step() {
+        if (state == null) throw new IllegalStateException("Not playing a board, call start() first");
+        lastStep = System.nanoTime();
+        lastSolveTime = 0;
+
+        if (!state.isFinished()) {
+            if (state.countVisibleCells() == 0) { // Nothing to go on yet. The first click is always safe, so open the middle.
+                state.interactAtCellPos(new Vector2Int(state.getWidth() / 2, state.getHeight() / 2), MinefieldState.BUTTON_REVEAL);
+            }
+            else {
+                long solveStart = System.nanoTime();
+                float[] probabilities = ai.determineProbabilityArray();
+                lastSolveTime = System.nanoTime() - solveStart;
+                MinefieldState.Batch batch = new MinefieldState.Batch(state);
+                int[] frontierTiles = ai.getFrontierTiles();
+                for (int i = 0; i < ai.getFrontierTileCount(); i++) {
+                    int cell = frontierTiles[i];
+                    if (!isHidden(cell) || !isCertain(probabilities[cell], ai.getErrorMargins()[cell])) continue;
+                    if (probabilities[cell] == 1) batch.flag(cell % state.getWidth(), cell / state.getWidth());
+                    else batch.reveal(cell % state.getWidth(), cell / state.getWidth());
+                }
+                float interior = ai.getInteriorProbability();
+                if (batch.size() == 0 && ai.isExact() && (interior == 0 || interior == 1)) { // Only near the end, when the mine count settles it
+                    addInteriorTiles(batch, interior == 1);
+                }
+
+                if (batch.size() > 0) state.applyBatch(batch);
+                else {
+                    int guess = findSafestGuess(probabilities);
+                    if (guess < 0) { // Only someone else's wrong flags left. The AI won't touch those, so it's stuck.
+                        stop();
+                        return null;
+                    }
+                    state.interactAtCellPos(new Vector2Int(guess % state.getWidth(), guess / state.getWidth()), MinefieldState.BUTTON_REVEAL);
+                    guesses++;
+                }
+            }
+            moves++;
+        }
+
+        if (!state.isFinished()) return null;
+        GameResult result = new GameResult(state.isWon(), moves, guesses, System.nanoTime() - gameStart);
+        gamesPlayed++;
+        if (result.won) gamesWon++;
+        totalMoves += result.moves;
+        totalGuesses += result.guesses;
+        totalPlayTime += result.nanos;
+        stop();
+        return result;
+    }
+
+    // Only exact answers get acted on. Monte Carlo estimates can come out at exactly 0 or 1 just because no sample
+    // happened to go the other way, so those need a margin of 0 as well.
+    private static boolean isCertain(float probability, float errorMargin) {
+        if (probability != 0 && probability != 1) return false;
+        return Float.isNaN(errorMargin) || errorMargin == 0;
+    }
+
+    // Flags or reveals every hidden tile that isn't next to a marker
+    private void addInteriorTiles(MinefieldState.Batch batch, boolean mines) {
+        for (int y = 0; y < state.getHeight(); y++) {
+            for (int x = 0; x < state.getWidth(); x++) {
+                if (!ai.isInterior(x, y)) continue;
+                if (mines) batch.flag(x, y);
+                else batch.reveal(x, y);
+            }
+        }
+    }
+
+    // The hidden tile with the lowest chance of a mine. Tiles the AI had nothing to say about get the average density
+    // of the board. Ties go to the tile with the fewest hidden neighbours, since that one is the most likely to open
+    // up an area (a corner beats an edge beats the middle).
+    // Only the frontier tiles get looked at one by one. The interior tiles all share one probability, so they only get
+    // searched for the best spot when that probability can actually win.
+    private int findSafestGuess(float[] probabilities) {
+        int width = state.getWidth();
+        long hidden = state.countHiddenCells();
+        float density = hidden > 0 ? (float) (state.getTotalMines() - state.countFlags()) / hidden : 1;
+
+        int best = -1, bestNeighbors = 0;
+        float bestProbability = Float.POSITIVE_INFINITY;
+        int[] frontierTiles = ai.getFrontierTiles();
+        for (int i = 0; i < ai.getFrontierTileCount(); i++) {
+            int cell = frontierTiles[i];
+            if (!isHidden(cell)) continue;
+            float probability = Float.isNaN(probabilities[cell]) ? density : probabilities[cell];
+            if (probability > bestProbability) continue;
+            int neighbors = countHiddenNeighbors(cell % width, cell / width);
+            if (probability == bestProbability && neighbors >= bestNeighbors) continue;
+            best = cell;
+            bestProbability = probability;
+            bestNeighbors = neighbors;
+        }
+
+        float interior = Float.isNaN(ai.getInteriorProbability()) ? density : ai.getInteriorProbability();
+        if (interior > bestProbability) return best;
+        int interiorBest = findBestInteriorTile();
+        if (interiorBest < 0) return best;
+        int neighbors = countHiddenNeighbors(interiorBest % width, interiorBest / width);
+        if (interior == bestProbability && neighbors >= bestNeighbors) return best;
+        return interiorBest;
+    }
+
+    // The interior tile with the fewest hidden neighbours, -1 if there aren't any. A free corner can't be beaten,
+    // so those get checked before falling back to searching the whole board.
+    private int findBestInteriorTile() {
+        int width = state.getWidth(), height = state.getHeight();
+        int[][] corners = {{0, 0}, {width - 1, 0}, {0, height - 1}, {width - 1, height - 1}};
+        for (int[] corner : corners) {
+            if (ai.isInterior(corner[0], corner[1])) return corner[1] * width + corner[0];
+        }
+
+        int best = -1, bestNeighbors = Integer.MAX_VALUE;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                if (!ai.isInterior(x, y)) continue;
+                int neighbors = countHiddenNeighbors(x, y);
+                if (neighbors >= bestNeighbors) continue;
+                best = y * width + x;
+                bestNeighbors = neighbors;
+            }
+        }
+        return best;
+    }
+
+    private boolean isHidden(int cell) {
+        return state.getCellFogAt(cell % state.getWidth(), cell / state.getWidth()) == MinefieldState.CellFogType.HIDDEN;
+    }
+
+    private int countHiddenNeighbors(int x, int y) {
+        int neighbors = 0;
+        for (int deltaY = -1; deltaY <= 1; deltaY++) {
+            for (int deltaX = -1; deltaX <= 1; deltaX++) {
+                if (deltaX == 0 && deltaY == 0) continue;
+                if (x + deltaX < 0 || x + deltaX >= state.getWidth() || y + deltaY < 0 || y + deltaY >= state.getHeight()) continue;
+                if (state.getCellFogAt(x + deltaX, y + deltaY) != MinefieldState.CellFogType.VISIBLE) neighbors++;
+            }
+        }
+        return neighbors;
+    }
+
+    //endregion
+
+    //region Statistics
+
+    public long getGamesPlayed() {
+        return gamesPlayed;
+    }
+
+    public long getGamesWon() {
+        return gamesWon;
+    }
+
+    public double getWinRate() {
+        return gamesPlayed == 0 ? 0 : (double) gamesWon / gamesPlayed;
+    }
+
+    public double getAverageGuesses() {
+        return gamesPlayed == 0 ? 0 : (double) totalGuesses / gamesPlayed;
+    }
+
+    public double getAverageMoves() {
+        return gamesPlayed == 0 ? 0 : (double) totalMoves / gamesPlayed;
+    }
+
+    // Finished games per second of playing, from the first move of each game to its last, step delay included
+    public double getGamesPerSecond() {
+        return totalPlayTime == 0 ? 0 : gamesPlayed * 1e9 / totalPlayTime;
+    }
+
+    public void resetStatistics() {
+        gamesPlayed = 0;
+        gamesWon = 0;
+        totalMoves = 0;
+        totalGuesses = 0;
+        totalPlayTime = 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d games, %.1f%% won, %.2f guesses/game, %.1f games/s",
+                gamesPlayed, getWinRate() * 100, getAverageGuesses(), getGamesPerSecond());
+    }
+
+    //endregion
+
+    // How a single game went
+    public static class GameResult {
+        public final boolean won;
+        public final int moves; // Steps taken, each one being a batch of certain moves or a single guess
+        public final int guesses;
+        public final long nanos; // From start() to the final move
+
+        public GameResult(boolean won, int moves, int guesses, long nanos) {
+            this.won = won;
+            this.moves = moves;
+            this.guesses = guesses;
+            this.nanos = nanos;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package AI;
+
+// Counts the mine layouts of a Frontier with a depth-first search.
+// Variables are assigned in place and unassigned on the way back out, every constraint keeps running totals so
+// a branch is dropped the moment a marker gets too many or can no longer get enough mines, and finished layouts
+// are only tallied, never stored. Memory scales with the size of the frontier, not with the number of layouts.
+// Not thread safe; use one solver per thread.
+public class BacktrackingSolver {
+    private static final int DEADLINE_CHECK_INTERVAL = 4096; // Nodes between clock checks, nanoTime() isn't free
+    private Frontier frontier;
+    private int[] order;
+    private int[] constraintMines; // Mines placed around each marker so far
+    private int[] constraintUnassigned; // Variables around each marker that haven't been decided yet
+    private int[] mineStack; // The variables currently holding a mine
+    private int mineStackSize;
+    private FrontierSolution solution;
+    private long deadline; // System.nanoTime() to give up at, 0 for never
+    private long nodes;
+    private long prunedByMineCount, prunedByPlacement; // Assignments that gave a marker too many mines, or left it too few
+    private boolean aborted;
+
+    public FrontierSolution solve(Frontier frontier) {
+        return solve(frontier, new int[0], 0);
+    }
+
+    public FrontierSolution solve(Frontier frontier, int[] prefix) {
+        return solve(frontier, prefix, 0);
+    }
+
+    // Only counts the layouts that start with the given values (0 or 1) on the first variables of
+    // frontier.searchOrder(). Solving every possible prefix of the same length and adding the results up
+    // gives the same tally as solving the whole thing, which is how ParallelSolver splits the work.
+    // Returns null if System.nanoTime() passes the deadline before the search is done (0 means no deadline).
+    public FrontierSolution solve(Frontier frontier, int[] prefix, long deadline) {
+        this.frontier = frontier;
+        this.deadline = deadline;
+        nodes = 0;
+        prunedByMineCount = 0;
+        prunedByPlacement = 0;
+        aborted = false;
+        order = frontier.searchOrder();
+        constraintMines = new int[frontier.getConstraintCount()];
+        constraintUnassigned = new int[frontier.getConstraintCount()];
+        for (int c = 0; c < constraintUnassigned.length; c++) constraintUnassigned[c] = frontier.constraintVars[c].length;
+        mineStack = new int[frontier.getVariableCount()];
+        mineStackSize = 0;
+        solution = new FrontierSolution(frontier);
+
+        boolean valid = true;
+        for (int depth = 0; depth < prefix.length && valid; depth++) {
+            valid = assign(order[depth], prefix[depth]);
+            if (prefix[depth] == 1) mineStack[mineStackSize++] = order[depth];
+        }
+        if (valid) search(prefix.length);
+
+        SolverStatistics statistics = SolverStatistics.get();
+        if (statistics.isEnabled()) statistics.recordSearch(nodes, prunedByMineCount, prunedByPlacement, solution.solutions);
+
+        FrontierSolution ret = aborted ? null : solution;
+        solution = null;
+        return ret;
+    }
+
+    private void search(int depth) {
+        if (++nodes % DEADLINE_CHECK_INTERVAL == 0 && deadline != 0 && System.nanoTime() - deadline > 0) aborted = true;
+        if (aborted) return;
+        if (depth == order.length) { // Every variable is decided and every marker is happy
+            solution.solutions++;
+            solution.solutionsByMines[mineStackSize]++;
+            for (int i = 0; i < mineStackSize; i++) {
+                solution.mineCounts[mineStack[i]]++;
+                solution.mineCountsByMines[mineStack[i]][mineStackSize]++;
+            }
+            return;
+        }
+
+        int var = order[depth];
+        for (int value = 0; value <= 1; value++) {
+            if (assign(var, value)) {
+                if (value == 1) mineStack[mineStackSize++] = var;
+                search(depth + 1);
+                if (value == 1) mineStackSize--;
+            }
+            unassign(var, value);
+        }
+    }
+
+    // Returns false if the assignment breaks one of the markers around the variable
+    private boolean assign(int var, int value) {
+        boolean tooMany = false, tooFew = false;
+        for (int c : frontier.varConstraints[var]) {
+            constraintUnassigned[c]--;
+            constraintMines[c] += value;
+            int needed = frontier.constraintMines[c];
+            if (constraintMines[c] > needed) tooMany = true;
+            else if (constraintMines[c] + constraintUnassigned[c] < needed) tooFew = true;
+        }
+        if (tooMany) prunedByMineCount++;
+        else if (tooFew) prunedByPlacement++;
+        return !tooMany && !tooFew;
+    }
+
+    private void unassign(int var, int value) {
+        for (int c : frontier.varConstraints[var]) {
+            constraintUnassigned[c]++;
+            constraintMines[c] -= value;
+        }
+    }
+}
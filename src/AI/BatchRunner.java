@@ -0,0 +1,268 @@
+package AI;
+
+import Game.MinefieldState;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Plays a lot of seeded games of one board size with AutoPlayers, spread over a pool of threads, and sums up how
+// they went. Game i always gets seed + i, so a run gives the same games (and, the timings aside, the same report)
+// whatever the number of threads. Every thread has its own AutoPlayer and CaseworkAI and only touches shared state
+// to grab the next chunk of games, so it scales with the number of cores.
+public class BatchRunner {
+    private static final int CHUNK_SIZE = 64; // Games a worker grabs at once
+
+    private final int width, height, mines;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private long seed;
+    private CaseworkAI.SolverMode solverMode = CaseworkAI.SolverMode.BACKTRACKING;
+    private PrintStream progressOutput; // null for a quiet run
+    private long progressInterval = 10_000; // ms
+
+    public BatchRunner(int width, int height, int mines) {
+        if (width < 1 || height < 1) throw new IllegalArgumentException("Board must be at least 1x1");
+        long openCells = (long) width * height - Math.min(3, width) * Math.min(3, height); // The first click keeps a 3x3 free
+        if (mines < 0 || mines > openCells) throw new IllegalArgumentException(mines + " mines don't fit on a " + width + "x" + height + " board");
+        this.width = width;
+        this.height = height;
+        this.mines = mines;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        if (threads < 1) throw new IllegalArgumentException("Need at least one thread");
+        this.threads = threads;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public void setSolverMode(CaseworkAI.SolverMode solverMode) {
+        this.solverMode = solverMode;
+    }
+
+    // Prints a line about how far along the run is every intervalMillis. Pass null to turn it off.
+    public void setProgressOutput(PrintStream output, long intervalMillis) {
+        progressOutput = output;
+        progressInterval = intervalMillis;
+    }
+
+    // Plays the games and waits for all of them to finish
+    public Report run(long games) throws InterruptedException {
+        if (games < 1) throw new IllegalArgumentException("Need at least one game");
+        AtomicLong nextGame = new AtomicLong();
+        AtomicLong finishedGames = new AtomicLong();
+        ArrayList<Worker> workers = new ArrayList<>();
+        ArrayList<Future<?>> futures = new ArrayList<>();
+
+        long start = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            for (int i = 0; i < threads; i++) {
+                Worker worker = new Worker(games, nextGame, finishedGames);
+                workers.add(worker);
+                futures.add(pool.submit(worker));
+            }
+            pool.shutdown();
+            while (!pool.awaitTermination(progressOutput == null ? 1000 : progressInterval, TimeUnit.MILLISECONDS)) {
+                if (progressOutput == null) continue;
+                long finished = finishedGames.get();
+                double seconds = (System.nanoTime() - start) / 1e9;
+                progressOutput.printf(Locale.ROOT, "%d/%d games (%.1f%%), %.1f games/s%n",
+                        finished, games, finished * 100.0 / games, finished / seconds);
+            }
+            for (Future<?> future : futures) future.get(); // Passes on anything a worker threw
+        } catch (ExecutionException e) {
+            throw new RuntimeException("A game crashed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        Report report = new Report(this, games, System.nanoTime() - start);
+        for (Worker worker : workers) report.add(worker);
+        return report;
+    }
+
+    // Plays chunks of games until there are none left, keeping its own tallies
+    private class Worker implements Runnable {
+        private final long games;
+        private final AtomicLong nextGame, finishedGames;
+        private final AutoPlayer player = new AutoPlayer();
+
+        private long won, lost, stuck, guesses, moves;
+        private final LatencyHistogram solveTimes = new LatencyHistogram();
+        private final LatencyHistogram gameTimes = new LatencyHistogram();
+
+        public Worker(long games, AtomicLong nextGame, AtomicLong finishedGames) {
+            this.games = games;
+            this.nextGame = nextGame;
+            this.finishedGames = finishedGames;
+            player.getAI().setSolverMode(solverMode);
+        }
+
+        @Override
+        public void run() {
+            try {
+                long first;
+                while ((first = nextGame.getAndAdd(CHUNK_SIZE)) < games) {
+                    long last = Math.min(games, first + CHUNK_SIZE);
+                    for (long i = first; i < last; i++) {
+                        if (Thread.currentThread().isInterrupted()) return;
+                        playGame(seed + i);
+                    }
+                    finishedGames.addAndGet(last - first);
+                }
+            } finally { // This AI is never used again, so don't leave its solver threads behind
+                player.stop();
+                player.getAI().shutdown();
+            }
+        }
+
+        private void playGame(long gameSeed) {
+            MinefieldState state = new MinefieldState(width, height, mines);
+            state.setSeed(gameSeed);
+            state.setUndoEnabled(false); // Nobody is going to take these moves back
+
+            AutoPlayer.GameResult result = null;
+            player.start(state);
+            while (player.isPlaying()) {
+                result = player.step();
+                if (player.getLastSolveNanos() > 0) solveTimes.record(player.getLastSolveNanos());
+            }
+
+            if (result == null) { // Gave up, which only happens if the board had wrong flags on it
+                stuck++;
+                return;
+            }
+            if (result.won) won++;
+            else lost++;
+            guesses += result.guesses;
+            moves += result.moves;
+            gameTimes.record(result.nanos);
+        }
+    }
+
+    // Everything a run found out. Write it out with writeJson() for other tools to pick up.
+    public static class Report {
+        public final int width, height, mines, threads;
+        public final long seed, games;
+        public final CaseworkAI.SolverMode solverMode;
+        public final long wallNanos;
+
+        private long won, lost, stuck, guesses, moves;
+        private final LatencyHistogram solveTimes = new LatencyHistogram(); // Each determineProbabilityArray() call
+        private final LatencyHistogram gameTimes = new LatencyHistogram(); // Each whole game
+
+        private Report(BatchRunner runner, long games, long wallNanos) {
+            this.width = runner.width;
+            this.height = runner.height;
+            this.mines = runner.mines;
+            this.threads = runner.threads;
+            this.seed = runner.seed;
+            this.solverMode = runner.solverMode;
+            this.games = games;
+            this.wallNanos = wallNanos;
+        }
+
+        private void add(Worker worker) {
+            won += worker.won;
+            lost += worker.lost;
+            stuck += worker.stuck;
+            guesses += worker.guesses;
+            moves += worker.moves;
+            solveTimes.add(worker.solveTimes);
+            gameTimes.add(worker.gameTimes);
+        }
+
+        public long getWon() {
+            return won;
+        }
+
+        public long getLost() {
+            return lost;
+        }
+
+        public double getWinRate() {
+            return (double) won / games;
+        }
+
+        // Half the width of the ~95% confidence interval around the win rate
+        public double getWinRateMargin() {
+            double p = getWinRate();
+            return 1.96 * Math.sqrt(p * (1 - p) / games);
+        }
+
+        public double getGuessesPerGame() {
+            return (double) guesses / games;
+        }
+
+        public double getMovesPerGame() {
+            return (double) moves / games;
+        }
+
+        // Games finished per second of wall clock time, over every thread together
+        public double getGamesPerSecond() {
+            return games * 1e9 / wallNanos;
+        }
+
+        public LatencyHistogram getSolveTimes() {
+            return solveTimes;
+        }
+
+        public LatencyHistogram getGameTimes() {
+            return gameTimes;
+        }
+
+        public String toJson() {
+            StringBuilder json = new StringBuilder();
+            json.append("{\n");
+            json.append(String.format(Locale.ROOT, "  \"width\": %d,\n  \"height\": %d,\n  \"mines\": %d,\n", width, height, mines));
+            json.append(String.format(Locale.ROOT, "  \"games\": %d,\n  \"seed\": %d,\n  \"threads\": %d,\n  \"solverMode\": \"%s\",\n",
+                    games, seed, threads, solverMode));
+            json.append(String.format(Locale.ROOT, "  \"won\": %d,\n  \"lost\": %d,\n  \"stuck\": %d,\n", won, lost, stuck));
+            json.append(String.format(Locale.ROOT, "  \"winRate\": %.6f,\n  \"winRateMargin\": %.6f,\n", getWinRate(), getWinRateMargin()));
+            json.append(String.format(Locale.ROOT, "  \"guessesPerGame\": %.4f,\n  \"movesPerGame\": %.4f,\n", getGuessesPerGame(), getMovesPerGame()));
+            json.append(String.format(Locale.ROOT, "  \"wallSeconds\": %.3f,\n  \"gamesPerSecond\": %.2f,\n", wallNanos / 1e9, getGamesPerSecond()));
+            json.append("  \"solveTimeNanos\": ").append(histogramJson(solveTimes)).append(",\n");
+            json.append("  \"gameTimeNanos\": ").append(histogramJson(gameTimes)).append("\n");
+            json.append("}\n");
+            return json.toString();
+        }
+
+        private static String histogramJson(LatencyHistogram histogram) {
+            return String.format(Locale.ROOT, "{\"count\": %d, \"mean\": %.1f, \"p50\": %d, \"p90\": %d, \"p99\": %d, \"p999\": %d, \"max\": %d}",
+                    histogram.getCount(), histogram.getMean(), histogram.getPercentile(50), histogram.getPercentile(90),
+                    histogram.getPercentile(99), histogram.getPercentile(99.9), histogram.getMax());
+        }
+
+        public void writeJson(Path path) throws IOException {
+            Files.writeString(path, toJson());
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%dx%d with %d mines: %d games, %.2f%% won (+/- %.2f), %.2f guesses/game, "
+                            + "%.1f games/s on %d threads, solve p50 %.3f ms, p99 %.3f ms",
+                    width, height, mines, games, getWinRate() * 100, getWinRateMargin() * 100, getGuessesPerGame(),
+                    getGamesPerSecond(), threads, solveTimes.getPercentile(50) / 1e6, solveTimes.getPercentile(99) / 1e6);
+        }
+    }
+}
@@ -1,9 +1,12 @@
 package AI;
 
-import Game.Minefield;
+import Game.MinefieldState;
 import Utils.TUtils;
 import Utils.Vector2Int;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -24,8 +27,127 @@ public class CaseworkAI {
         }
     }
 
+    // How determineProbabilities() counts the mine layouts
+    public enum SolverMode {
+        ENUMERATION, // The original breadth-first expansion over focus maps. Keeps every layout in memory.
+        BACKTRACKING, // Depth-first search over each frontier region, see BacktrackingSolver
+        LINEAR_ALGEBRA // Gaussian elimination on each region, then only the free variables get enumerated, see LinearSolver
+    }
+
+    private SolverMode solverMode = SolverMode.BACKTRACKING;
+    private BacktrackingSolver backtrackingSolver = new BacktrackingSolver();
+    private RuleSolver ruleSolver = new RuleSolver();
+    private LinearSolver linearSolver = new LinearSolver();
+    private MonteCarloSolver monteCarloSolver = new MonteCarloSolver();
+    private long timeBudget; // Nanoseconds determineProbabilities() may take, 0 for no limit
+    private long sampleBudget = Long.MAX_VALUE; // Most samples the Monte Carlo estimates may take per frontier
+    private float[] probabilities = new float[0]; // Reused by every determineProbabilityArray()
+    private float[] errorMargins = new float[0];
+    private static final int MIN_CACHED_VARIABLES = 8;
+    private final SolutionCache solutionCache = new SolutionCache(1024);
+    private boolean rulePassEnabled = true;
+    private ParallelSolver parallelSolver; // null when running single threaded
+
     private int gridWidth;
     private int gridHeight;
+    private int[] variableOfCell; // Scratch space for determineFrontiers(), -1 for tiles that aren't variables
+    private int remainingMines; // Mines that aren't flagged or revealed yet
+    private int hiddenTiles;
+    private float interiorProbability = Float.NaN;
+    private boolean exact = true; // Whether the last determineProbabilityArray() got by without any estimates
+    private double[] logFactorials = new double[]{0};
+    private boolean[] onFrontier; // Tiles the last determineProbabilityArray() worked out on their own, see getProbabilityAt()
+    private int[] shownCells; // The same tiles as a list, so the next call only has to clear those
+    private int shownCount;
+
+    // Incremental updates, see attach()
+    private MinefieldState attachedState;
+    private final MinefieldState.ChangeListener changeListener = this::onCellsChanged;
+    private final ArrayList<int[]> pendingChanges = new ArrayList<>(); // Changed rectangles that haven't been copied into generalGrid yet
+    private int[] constraintCells; // Every marker with hidden tiles around it, in no particular order
+    private int constraintCount;
+    private int[] constraintSlot; // Index of each tile in constraintCells, -1 if it's not a constraint
+    private boolean[] touched; // Tiles whose constraint may have changed since the last solve
+    private int[] touchedCells;
+    private int touchedCount;
+    private RegionSolution[] solutionAtCell; // Region each constraint was last part of
+    private RegionSolution[] regionAtVariable; // Region each hidden tile was last part of
+    private final ArrayList<RegionSolution> regions = new ArrayList<>(); // The frontier as of the last updateRegions()
+    private int[] regroupCells; // Scratch space for updateRegions(): constraints whose region is being built again
+    private boolean[] regrouping;
+    private int regroupCount;
+
+    public SolverMode getSolverMode() {
+        return solverMode;
+    }
+
+    public void setSolverMode(SolverMode solverMode) {
+        this.solverMode = solverMode;
+    }
+
+    public boolean isRulePassEnabled() {
+        return rulePassEnabled;
+    }
+
+    // Whether BACKTRACKING mode runs the RuleSolver first and only enumerates what the rules couldn't decide
+    public void setRulePassEnabled(boolean rulePassEnabled) {
+        this.rulePassEnabled = rulePassEnabled;
+    }
+
+    public long getTimeBudgetMillis() {
+        return timeBudget / 1_000_000;
+    }
+
+    // Caps how long determineProbabilities() takes in BACKTRACKING and LINEAR_ALGEBRA mode. Regions that can't be
+    // counted exactly in the first half of it get a Monte Carlo estimate instead (see MonteCarloSolver), which gets
+    // better the bigger the budget is. 0 turns the cap off and everything gets counted exactly, however long it takes.
+    public void setTimeBudgetMillis(long millis) {
+        if (millis < 0) throw new IllegalArgumentException("Time budget can't be negative");
+        timeBudget = millis * 1_000_000;
+    }
+
+    public long getSampleBudget() {
+        return sampleBudget;
+    }
+
+    // Most samples each Monte Carlo estimate may take, even if there's time left
+    public void setSampleBudget(long samples) {
+        if (samples < 1) throw new IllegalArgumentException("Sample budget must be at least 1");
+        sampleBudget = samples;
+    }
+
+    // Half the width of the ~95% confidence interval of every tile (index y * width + x) whose probability was
+    // estimated in the last determineProbabilityArray(), NaN for the rest. The margins come from the region on its own,
+    // before the mine count weighting, so they're a close guide rather than exact bounds.
+    public float[] getErrorMargins() {
+        return errorMargins;
+    }
+
+    // Solutions of recently seen frontier patterns, kept across calls and boards. Use it to read the hit/miss/eviction
+    // statistics or change its limits; a capacity of 0 turns it off.
+    public SolutionCache getSolutionCache() {
+        return solutionCache;
+    }
+
+    public int getParallelism() {
+        return parallelSolver == null ? 1 : parallelSolver.getParallelism();
+    }
+
+    // Number of threads BACKTRACKING and LINEAR_ALGEBRA mode may use. 1 solves everything on the calling thread.
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) throw new IllegalArgumentException("Parallelism must be at least 1");
+        if (parallelism == getParallelism()) return;
+        if (parallelSolver != null) parallelSolver.shutdown();
+        parallelSolver = parallelism == 1 ? null : new ParallelSolver(parallelism);
+    }
+
+    // Stops the threads setParallelism() started and lets go of the attached board. The pool's threads would
+    // otherwise stay around for as long as this object does. Solving again afterwards just runs single threaded.
+    public void shutdown() {
+        detach();
+        if (parallelSolver != null) parallelSolver.shutdown();
+        parallelSolver = null;
+    }
 
     public boolean isMarker(int gridX, int gridY) {
         return generalGrid[gridY][gridX] < TileID.HIDDEN.id;
@@ -40,24 +162,212 @@ public class CaseworkAI {
         return generalGrid[gridY][gridX] == TileID.REVEALED.id;
     }
 
-    public void importGrid(Minefield minefield) {
-        generalGrid = new int[minefield.getHeight()][minefield.getWidth()];
+    public void importGrid(MinefieldState minefield) {
+        SolverStatistics statistics = SolverStatistics.get();
+        long importStart = statistics.isEnabled() ? System.nanoTime() : 0;
         gridHeight = minefield.getHeight();
         gridWidth = minefield.getWidth();
+        int cells = gridWidth * gridHeight;
+        if (generalGrid == null || generalGrid.length != gridHeight || generalGrid[0].length != gridWidth) {
+            generalGrid = new int[gridHeight][gridWidth];
+        }
+        if (variableOfCell == null || variableOfCell.length != cells) {
+            probabilities = new float[cells];
+            Arrays.fill(probabilities, Float.NaN);
+            errorMargins = new float[cells];
+            Arrays.fill(errorMargins, Float.NaN);
+            variableOfCell = new int[cells];
+            Arrays.fill(variableOfCell, -1);
+            onFrontier = new boolean[cells];
+            shownCells = new int[cells];
+            shownCount = 0;
+            constraintCells = new int[cells];
+            constraintSlot = new int[cells];
+            touched = new boolean[cells];
+            touchedCells = new int[cells];
+            solutionAtCell = new RegionSolution[cells];
+            regionAtVariable = new RegionSolution[cells];
+            regroupCells = new int[cells];
+            regrouping = new boolean[cells];
+        }
+
+        if (logFactorials.length <= cells) {
+            int start = logFactorials.length;
+            logFactorials = Arrays.copyOf(logFactorials, cells + 1);
+            for (int n = start; n < logFactorials.length; n++) logFactorials[n] = logFactorials[n - 1] + Math.log(n);
+        }
 
+        remainingMines = minefield.getTotalMines();
+        hiddenTiles = 0;
         for (int y = 0; y < gridHeight; y++) {
             for (int x = 0; x < gridWidth; x++) {
-                if (minefield.getCellFogAt(x, y) == Minefield.CellFogType.HIDDEN) generalGrid[y][x] = TileID.HIDDEN.id;
-                else if (minefield.getCellFogAt(x, y) == Minefield.CellFogType.FLAGGED) generalGrid[y][x] = TileID.FLAGGED.id;
-                else if (minefield.checkForMineAt(x, y)) generalGrid[y][x] = TileID.REVEALED.id;
-                else generalGrid[y][x] = minefield.getMarkerAt(x, y);
+                generalGrid[y][x] = readTile(minefield, x, y);
+                if (isHidden(x, y)) hiddenTiles++;
+                else if (isFlag(x, y) || isRevealedMine(x, y)) remainingMines--;
+            }
+        }
+
+        // Nothing from the last board can be trusted anymore, so every constraint counts as changed
+        pendingChanges.clear();
+        regions.clear();
+        Arrays.fill(solutionAtCell, null);
+        Arrays.fill(regionAtVariable, null);
+        Arrays.fill(touched, false);
+        touchedCount = 0;
+        Arrays.fill(constraintSlot, -1);
+        constraintCount = 0;
+        for (int y = 0; y < gridHeight; y++) {
+            for (int x = 0; x < gridWidth; x++) updateConstraint(x, y);
+        }
+        for (int i = 0; i < constraintCount; i++) {
+            touched[constraintCells[i]] = true;
+            touchedCells[touchedCount++] = constraintCells[i];
+        }
+        if (statistics.isEnabled()) statistics.recordPhase(SolverStatistics.Phase.IMPORT, importStart);
+    }
+
+    private int readTile(MinefieldState minefield, int x, int y) {
+        return switch (minefield.getCellFogAt(x, y)) {
+            case HIDDEN -> TileID.HIDDEN.id;
+            case FLAGGED -> TileID.FLAGGED.id;
+            default -> minefield.checkForMineAt(x, y) ? TileID.REVEALED.id : minefield.getMarkerAt(x, y);
+        };
+    }
+
+    // Imports the board once and then keeps listening to it. From then on, only the tiles that changed get copied
+    // over before each solve, and regions that none of the changes reached reuse their last solution, so the cost of
+    // a move depends on how much it changed rather than on the size of the board.
+    public void attach(MinefieldState minefield) {
+        detach();
+        importGrid(minefield);
+        attachedState = minefield;
+        minefield.addChangeListener(changeListener);
+    }
+
+    public void detach() {
+        if (attachedState == null) return;
+        attachedState.removeChangeListener(changeListener);
+        attachedState = null;
+    }
+
+    private void onCellsChanged(int minX, int minY, int maxX, int maxY) {
+        pendingChanges.add(new int[]{minX, minY, maxX, maxY});
+    }
+
+    // Copies the changes since the last call into generalGrid. determineProbabilities() does this on its own.
+    public void update() {
+        if (attachedState == null) return;
+        for (int[] change : pendingChanges) {
+            for (int y = change[1]; y <= change[3]; y++) {
+                for (int x = change[0]; x <= change[2]; x++) updateTile(x, y);
+            }
+        }
+        pendingChanges.clear();
+    }
+
+    private void updateTile(int x, int y) {
+        int tile = readTile(attachedState, x, y);
+        if (tile == generalGrid[y][x]) return;
+
+        if (isHidden(x, y)) hiddenTiles--;
+        else if (isFlag(x, y) || isRevealedMine(x, y)) remainingMines++;
+        generalGrid[y][x] = tile;
+        if (isHidden(x, y)) hiddenTiles++;
+        else if (isFlag(x, y) || isRevealedMine(x, y)) remainingMines--;
+
+        // The tile itself and every marker around it might have gained or lost hidden neighbours or mines
+        for (int i = -1; i <= 1; i++) {
+            for (int j = -1; j <= 1; j++) {
+                int neighborX = x + j;
+                int neighborY = y + i;
+                if (neighborX < 0 || neighborX >= gridWidth || neighborY < 0 || neighborY >= gridHeight) continue;
+                int cell = neighborY * gridWidth + neighborX;
+                if (!touched[cell]) {
+                    touched[cell] = true;
+                    touchedCells[touchedCount++] = cell;
+                }
+                updateConstraint(neighborX, neighborY);
+            }
+        }
+    }
+
+    // Adds or removes the tile from the constraint list depending on whether it's a marker with hidden neighbours
+    private void updateConstraint(int x, int y) {
+        boolean isConstraint = false;
+        if (isMarker(x, y)) {
+            for (int i = -1; i <= 1 && !isConstraint; i++) {
+                for (int j = -1; j <= 1; j++) {
+                    int neighborX = x + j;
+                    int neighborY = y + i;
+                    if (neighborX < 0 || neighborX >= gridWidth || neighborY < 0 || neighborY >= gridHeight) continue;
+                    if (isHidden(neighborX, neighborY)) {
+                        isConstraint = true;
+                        break;
+                    }
+                }
             }
         }
+
+        int cell = y * gridWidth + x;
+        if (isConstraint && constraintSlot[cell] == -1) {
+            constraintSlot[cell] = constraintCount;
+            constraintCells[constraintCount++] = cell;
+        } else if (!isConstraint && constraintSlot[cell] != -1) { // Swap the last one into its place
+            int last = constraintCells[--constraintCount];
+            constraintCells[constraintSlot[cell]] = last;
+            constraintSlot[last] = constraintSlot[cell];
+            constraintSlot[cell] = -1;
+        }
+    }
+
+    // Chance of a mine on a hidden tile that isn't next to any marker, as of the last determineProbabilities().
+    // NaN if there are no such tiles or the board doesn't add up.
+    public float getInteriorProbability() {
+        return interiorProbability;
+    }
+
+    // Whether every region in the last determineProbabilityArray() was counted exactly. If one had to be estimated
+    // (see setTimeBudgetMillis()), the mine count weighting and getInteriorProbability() are only estimates as well.
+    public boolean isExact() {
+        return exact;
+    }
+
+    // Grid indices (y * width + x) of the tiles the last determineProbabilityArray() worked out on their own, in the
+    // first getFrontierTileCount() entries. Every other hidden tile is an interior tile. Reused by the next call.
+    public int[] getFrontierTiles() {
+        return shownCells;
+    }
+
+    public int getFrontierTileCount() {
+        return shownCount;
+    }
+
+    // Whether the tile is hidden but wasn't on the frontier in the last determineProbabilityArray(), so it shares
+    // getInteriorProbability() with every other tile like it
+    public boolean isInterior(int x, int y) {
+        return isHidden(x, y) && !onFrontier[y * gridWidth + x];
+    }
+
+    // Chance of a mine on the tile as of the last determineProbabilityArray(), including the interior tiles that the
+    // array leaves out. NaN for tiles that aren't hidden or that nothing could be worked out for.
+    public float getProbabilityAt(int x, int y) {
+        int cell = y * gridWidth + x;
+        return isInterior(x, y) ? interiorProbability : probabilities[cell];
+    }
+
+    private double logBinomial(int n, int k) {
+        return logFactorials[n] - logFactorials[k] - logFactorials[n - k];
     }
 
     // Active spaces are ones with hidden tiles around them
     public Vector2Int[] determineActiveSpaces() {
-        LinkedList<Vector2Int> spacesToAdd = new LinkedList<>();
+        return toPositions(findActiveCells());
+    }
+
+    // Same as determineActiveSpaces(), as grid indices (y * width + x)
+    private int[] findActiveCells() {
+        int[] spacesToAdd = new int[16];
+        int spaceCount = 0;
         for (int y = 0; y < gridHeight; y++) {
             for (int x = 0; x < gridWidth; x++) {
 
@@ -80,34 +390,313 @@ public class CaseworkAI {
                         }
                     }
 
-                    if (hasMarkedNeighbor && hasHiddenNeighbor) spacesToAdd.add(new Vector2Int(x, y));
+                    if (hasMarkedNeighbor && hasHiddenNeighbor) {
+                        if (spaceCount == spacesToAdd.length) spacesToAdd = Arrays.copyOf(spacesToAdd, spaceCount * 2);
+                        spacesToAdd[spaceCount++] = y * gridWidth + x;
+                    }
 
                 }
 
             }
         }
 
-        Vector2Int[] spaceArray = new Vector2Int[spacesToAdd.size()];
-        return spacesToAdd.toArray(spaceArray);
+        return Arrays.copyOf(spacesToAdd, spaceCount);
+    }
+
+    private Vector2Int[] toPositions(int[] cells) {
+        Vector2Int[] ret = new Vector2Int[cells.length];
+        for (int i = 0; i < cells.length; i++) ret[i] = new Vector2Int(cells[i] % gridWidth, cells[i] / gridWidth);
+        return ret;
+    }
+
+    private int[] toCells(Vector2Int[] positions) {
+        int[] ret = new int[positions.length];
+        for (int i = 0; i < positions.length; i++) ret[i] = positions[i].y * gridWidth + positions[i].x;
+        return ret;
+    }
+
+
+    // Splits the active spaces into groups that don't share any hidden tiles.
+    // Groups can't affect each other, so each one can be solved on its own, and the amount of work adds up
+    // across groups instead of multiplying.
+    public ArrayList<Vector2Int[]> determineFrontierComponents(Vector2Int[] activeSpaces) {
+        ArrayList<Vector2Int[]> components = new ArrayList<>();
+        for (int[] component : findComponents(toCells(activeSpaces))) components.add(toPositions(component));
+        return components;
+    }
+
+    // Same as determineFrontierComponents(), over grid indices
+    private int[][] findComponents(int[] activeCells) {
+        int[] parents = new int[activeCells.length]; // Union-find over the active spaces
+        for (int i = 0; i < parents.length; i++) parents[i] = i;
+
+        // variableOfCell holds the first active space found next to each hidden tile for now
+        int[] ownedCells = new int[16];
+        int ownedCount = 0;
+        for (int space = 0; space < activeCells.length; space++) {
+            for (int i = -1; i <= 1; i++) {
+                for (int j = -1; j <= 1; j++) {
+                    if (i == 0 && j == 0) continue;
+                    int neighborX = activeCells[space] % gridWidth + j;
+                    int neighborY = activeCells[space] / gridWidth + i;
+                    if (neighborX < 0 || neighborX >= gridWidth || neighborY < 0 || neighborY >= gridHeight) continue;
+                    if (!isHidden(neighborX, neighborY)) continue;
+
+                    int cell = neighborY * gridWidth + neighborX;
+                    int owner = variableOfCell[cell];
+                    if (owner != -1) parents[findRoot(parents, space)] = findRoot(parents, owner);
+                    else {
+                        variableOfCell[cell] = space;
+                        if (ownedCount == ownedCells.length) ownedCells = Arrays.copyOf(ownedCells, ownedCount * 2);
+                        ownedCells[ownedCount++] = cell;
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < ownedCount; i++) variableOfCell[ownedCells[i]] = -1; // Leave the scratch space clean for next time
+
+        // Group the spaces by root, keeping them in their original order
+        int[] componentOfRoot = new int[activeCells.length];
+        Arrays.fill(componentOfRoot, -1);
+        int[] sizes = new int[activeCells.length];
+        int componentCount = 0;
+        for (int space = 0; space < activeCells.length; space++) {
+            int root = findRoot(parents, space);
+            if (componentOfRoot[root] == -1) componentOfRoot[root] = componentCount++;
+            sizes[componentOfRoot[root]]++;
+        }
+        int[][] components = new int[componentCount][];
+        for (int c = 0; c < componentCount; c++) {
+            components[c] = new int[sizes[c]];
+            sizes[c] = 0; // Reused as the fill position below
+        }
+        for (int space = 0; space < activeCells.length; space++) {
+            int component = componentOfRoot[findRoot(parents, space)];
+            components[component][sizes[component]++] = activeCells[space];
+        }
+        return components;
+    }
+
+    static int findRoot(int[] parents, int i) {
+        while (parents[i] != i) {
+            parents[i] = parents[parents[i]]; // Path halving
+            i = parents[i];
+        }
+        return i;
+    }
+
+    // Builds the constraints of every marker that has hidden tiles around it, split into independent regions.
+    // Flags and revealed mines count towards a marker's mines, so only the remaining ones become constraints.
+    // Regions that nothing changed since the last call come back as the same Frontier objects.
+    public ArrayList<Frontier> determineFrontiers() {
+        updateRegions();
+        ArrayList<Frontier> frontiers = new ArrayList<>(regions.size());
+        for (RegionSolution region : regions) frontiers.add(region.frontier);
+        return frontiers;
+    }
+
+    // Brings the regions up to date with the changes since the last call. Every region a change reached gets taken
+    // apart and built again from its constraints, along with any region that now shares a tile with one of those.
+    // The rest keep their frontier and solution, so this only costs as much as the regions that changed.
+    private void updateRegions() {
+        update();
+        regroupCount = 0;
+        for (int i = 0; i < touchedCount; i++) {
+            int cell = touchedCells[i];
+            touched[cell] = false;
+            dissolve(solutionAtCell[cell]);
+            queueRegroup(cell);
+        }
+        touchedCount = 0;
+        regions.removeIf(region -> region.dissolved);
+        if (regroupCount == 0) return;
+
+        int[] neighbors = new int[8];
+        int[] constraintMineList = new int[16];
+        int[][] constraintVarList = new int[16][]; // Holds variable ids over every rebuilt region for now
+        int variableCount = 0;
+        int[] variableCells = new int[16];
+
+        // regroupCells grows while this runs, since a constraint can reach into a region that has to go as well
+        for (int constraint = 0; constraint < regroupCount; constraint++) {
+            int x = regroupCells[constraint] % gridWidth;
+            int y = regroupCells[constraint] / gridWidth;
+
+            int hiddenNeighbors = 0;
+            int remainingMines = generalGrid[y][x];
+            for (int i = -1; i <= 1; i++) {
+                for (int j = -1; j <= 1; j++) {
+                    if (i == 0 && j == 0) continue;
+                    int neighborX = x + j;
+                    int neighborY = y + i;
+                    if (neighborX < 0 || neighborX >= gridWidth || neighborY < 0 || neighborY >= gridHeight) continue;
+                    if (isHidden(neighborX, neighborY)) neighbors[hiddenNeighbors++] = neighborY * gridWidth + neighborX;
+                    else if (isFlag(neighborX, neighborY) || isRevealedMine(neighborX, neighborY)) remainingMines--;
+                }
+            }
+            int[] vars = new int[hiddenNeighbors];
+            for (int n = 0; n < hiddenNeighbors; n++) {
+                int cell = neighbors[n];
+                if (variableOfCell[cell] == -1) {
+                    dissolve(regionAtVariable[cell]);
+                    if (variableCount == variableCells.length) variableCells = Arrays.copyOf(variableCells, variableCount * 2);
+                    variableCells[variableCount] = cell;
+                    variableOfCell[cell] = variableCount++;
+                }
+                vars[n] = variableOfCell[cell];
+            }
+            if (constraint == constraintMineList.length) {
+                constraintMineList = Arrays.copyOf(constraintMineList, constraint * 2);
+                constraintVarList = Arrays.copyOf(constraintVarList, constraint * 2);
+            }
+            constraintMineList[constraint] = remainingMines;
+            constraintVarList[constraint] = vars;
+        }
+
+        // Variables that share a marker end up in the same region
+        int[] parents = new int[variableCount];
+        for (int i = 0; i < variableCount; i++) parents[i] = i;
+        for (int c = 0; c < regroupCount; c++) {
+            int[] vars = constraintVarList[c];
+            for (int n = 1; n < vars.length; n++) parents[findRoot(parents, vars[n])] = findRoot(parents, vars[0]);
+        }
+
+        // Count out each region's variables and constraints first, so everything can go straight into int arrays
+        int[] regionOfRoot = new int[variableCount];
+        Arrays.fill(regionOfRoot, -1);
+        int[] regionOfVariable = new int[variableCount];
+        int[] localIndex = new int[variableCount];
+        int regionCount = 0;
+        int[] variablesInRegion = new int[variableCount];
+        int[] constraintsInRegion = new int[variableCount];
+        for (int v = 0; v < variableCount; v++) {
+            int root = findRoot(parents, v);
+            if (regionOfRoot[root] == -1) regionOfRoot[root] = regionCount++;
+            regionOfVariable[v] = regionOfRoot[root];
+            localIndex[v] = variablesInRegion[regionOfVariable[v]]++;
+        }
+        int[] regionOfConstraint = new int[regroupCount];
+        for (int c = 0; c < regroupCount; c++) {
+            regionOfConstraint[c] = regionOfVariable[constraintVarList[c][0]];
+            constraintsInRegion[regionOfConstraint[c]]++;
+        }
+
+        int[][] cells = new int[regionCount][];
+        int[][] constraintCells = new int[regionCount][];
+        int[][] constraintMines = new int[regionCount][];
+        int[][][] constraintVars = new int[regionCount][][];
+        for (int r = 0; r < regionCount; r++) {
+            cells[r] = new int[variablesInRegion[r]];
+            constraintCells[r] = new int[constraintsInRegion[r]];
+            constraintMines[r] = new int[constraintsInRegion[r]];
+            constraintVars[r] = new int[constraintsInRegion[r]][];
+            constraintsInRegion[r] = 0; // Reused as the fill position below
+        }
+        for (int v = 0; v < variableCount; v++) cells[regionOfVariable[v]][localIndex[v]] = variableCells[v];
+        for (int c = 0; c < regroupCount; c++) {
+            int r = regionOfConstraint[c];
+            int i = constraintsInRegion[r]++;
+            constraintCells[r][i] = regroupCells[c];
+            constraintMines[r][i] = constraintMineList[c];
+            int[] vars = constraintVarList[c];
+            for (int n = 0; n < vars.length; n++) vars[n] = localIndex[vars[n]];
+            constraintVars[r][i] = vars;
+        }
+
+        regions.removeIf(region -> region.dissolved); // Some more might have gone since the first time
+        for (int r = 0; r < regionCount; r++) {
+            RegionSolution region = new RegionSolution(new Frontier(cells[r], constraintCells[r], constraintMines[r], constraintVars[r]));
+            for (int cell : cells[r]) regionAtVariable[cell] = region;
+            for (int cell : constraintCells[r]) solutionAtCell[cell] = region;
+            regions.add(region);
+        }
+
+        // Leave the scratch space clean for next time
+        for (int v = 0; v < variableCount; v++) variableOfCell[variableCells[v]] = -1;
+        for (int c = 0; c < regroupCount; c++) regrouping[regroupCells[c]] = false;
+        regroupCount = 0;
+    }
+
+    // Queues every constraint of the region to be built again, unless that already happened
+    private void dissolve(RegionSolution region) {
+        if (region == null || region.dissolved) return;
+        region.dissolved = true;
+        for (int cell : region.frontier.constraintCells) queueRegroup(cell);
     }
 
+    private void queueRegroup(int cell) {
+        if (constraintSlot[cell] == -1 || regrouping[cell]) return; // Not a constraint anymore, or already queued
+        regrouping[cell] = true;
+        regroupCells[regroupCount++] = cell;
+    }
 
     public HashSet<HashMap<Vector2Int, Integer>> determinePossibilities() {
+        return determinePossibilities(determineActiveSpaces());
+    }
+
+    // Finds every mine layout around the given active spaces that agrees with all of their markers
+    public HashSet<HashMap<Vector2Int, Integer>> determinePossibilities(Vector2Int[] activeSpaces) {
+        HashSet<HashMap<Vector2Int, Integer>> possibleFocusMaps = new HashSet<>();
+        int[] activeCells = toCells(activeSpaces);
+        int[] focusCells = determineFocusCells(activeCells);
+        for (BitSet layout : determineLayouts(activeCells, focusCells)) {
+            HashMap<Vector2Int, Integer> focusMap = new HashMap<>();
+            for (int i = 0; i < focusCells.length; i++) {
+                int x = focusCells[i] % gridWidth;
+                int y = focusCells[i] / gridWidth;
+                focusMap.put(new Vector2Int(x, y), layout.get(i) ? TileID.FLAGGED.id : generalGrid[y][x]);
+            }
+            possibleFocusMaps.add(focusMap);
+        }
+        return possibleFocusMaps;
+    }
+
+    // Grid indices of every tile around the active spaces that a layout covers (so no flags or markers).
+    // determineLayouts() refers to them by their position in this array.
+    private int[] determineFocusCells(int[] activeCells) {
+        int[] focusCells = new int[16];
+        int focusCount = 0;
+        for (int space : activeCells) {
+            for (int i = -1; i <= 1; i++) {
+                for (int j = -1; j <= 1; j++) {
+                    if (i == 0 && j == 0) continue;
+                    int neighborX = space % gridWidth + j;
+                    int neighborY = space / gridWidth + i;
+                    if (neighborX < 0 || neighborX >= gridWidth || neighborY < 0 || neighborY >= gridHeight) continue;
+                    if (isFlag(neighborX, neighborY) || isMarker(neighborX, neighborY)) continue;
+                    int cell = neighborY * gridWidth + neighborX;
+                    if (variableOfCell[cell] != -1) continue;
+                    if (focusCount == focusCells.length) focusCells = Arrays.copyOf(focusCells, focusCount * 2);
+                    variableOfCell[cell] = focusCount;
+                    focusCells[focusCount++] = cell;
+                }
+            }
+        }
+        for (int i = 0; i < focusCount; i++) variableOfCell[focusCells[i]] = -1;
+        return Arrays.copyOf(focusCells, focusCount);
+    }
+
+    // Every valid layout as a bitset over focusCells, with a bit set wherever a mine goes
+    private HashSet<BitSet> determineLayouts(int[] activeCells, int[] focusCells) {
         // Focus Maps allow us to only look at a certain portion of the grid.
         // This means we can only worry about copying data around the active spaces where all the changes will be happening.
         // Saves a decent bit of memory and time when the board is large.
 
-        Vector2Int[] activeSpaces = determineActiveSpaces();
-        HashSet<HashMap<Vector2Int, Integer>> possibleFocusMaps = new HashSet<>();
-        if (activeSpaces.length == 0) return possibleFocusMaps;
+        HashSet<BitSet> possibleLayouts = new HashSet<>();
+        if (activeCells.length == 0) return possibleLayouts;
+        for (int i = 0; i < focusCells.length; i++) variableOfCell[focusCells[i]] = i;
 
         LinkedList<FocusMapConstruct> constructsToMake = new LinkedList<>();
         constructsToMake.add(new FocusMapConstruct());
+        int[] neighbors = new int[8]; // Focus indices of the hidden tiles around the current active space, in layout bit order
+        long constructsExpanded = 0, prunedByMineCount = 0, prunedByIllegalPlacement = 0; // For SolverStatistics
 
         while (!constructsToMake.isEmpty()) {
             FocusMapConstruct currentConstruct = constructsToMake.pop();
+            constructsExpanded++;
 
-            Vector2Int currentActiveSpace = activeSpaces[currentConstruct.nextActiveSpaceID];
+            int activeX = activeCells[currentConstruct.nextActiveSpaceID] % gridWidth;
+            int activeY = activeCells[currentConstruct.nextActiveSpaceID] / gridWidth;
 
 
             // STEP 1: Determine the base settings so we can create the possibilities.
@@ -115,82 +704,60 @@ public class CaseworkAI {
             // could stem from the current construct.
 
             int hiddenTiles = 0;
-            int remainingMines = generalGrid[currentActiveSpace.y][currentActiveSpace.x];
+            int remainingMines = generalGrid[activeY][activeX];
 
             for (int i = -1; i <= 1; i++) {
                 for (int j = -1; j <= 1; j++) {
                     if (i == 0 && j == 0) continue;
-                    int neighborX = currentActiveSpace.x + j;
-                    int neighborY = currentActiveSpace.y + i;
+                    int neighborX = activeX + j;
+                    int neighborY = activeY + i;
                     if (neighborX < 0 || neighborX >= gridWidth || neighborY < 0 || neighborY >= gridHeight) continue;
-                    Vector2Int neighbor = new Vector2Int(neighborX, neighborY);
 
                     if (isFlag(neighborX, neighborY)) remainingMines--; // Don't include already-known flags in the focus map, but be sure to count them towards remaining mines
                     else if (!isMarker(neighborX, neighborY)) { // Don't include markers in the focus map
-                        currentConstruct.focusMap.putIfAbsent(neighbor, generalGrid[neighborY][neighborX]); // Add the new tiles around the currentActiveSpace
-
-                        int tileID = currentConstruct.focusMap.get(neighbor);
-                        if (tileID == TileID.HIDDEN.id) hiddenTiles++;
-                        if (tileID == TileID.FLAGGED.id || tileID == TileID.REVEALED.id) remainingMines--;
+                        int focusIndex = variableOfCell[neighborY * gridWidth + neighborX];
+                        if (currentConstruct.mines.get(focusIndex) || isRevealedMine(neighborX, neighborY)) remainingMines--;
+                        else if (isHidden(neighborX, neighborY)) neighbors[hiddenTiles++] = focusIndex;
                     }
                 }
             }
 
-            if (remainingMines < 0) continue; // if there are too many flags, invalidate this construct
+            if (remainingMines < 0) { // if there are too many flags, invalidate this construct
+                prunedByMineCount++;
+                continue;
+            }
 
 
             // STEP 2: Create the possible mine layouts
 
-            String temp = ""; // construct the basic layout template that contains how many mines and blanks are remaining
-            for (int i = 0; i < hiddenTiles; i++) {
-                if (i < remainingMines) temp += "1";
-                else temp += "0";
-            }
-            HashSet<String> possibleLayoutTemplates = TUtils.permutations(temp);
-
-            for (String layoutTemplate : possibleLayoutTemplates) {
-                int positionInTemplate = 0;
-                HashMap<Vector2Int, Integer> newFocusMap = currentConstruct.cloneFocusMap();
-                HashSet<Vector2Int> newIllegals = currentConstruct.cloneIllegals();
+            // Each layout is a bitmask over the hidden tiles around the active space, with a 1 where a mine goes
+            for (int layout : TUtils.combinations(hiddenTiles, remainingMines)) {
+                BitSet newMines = (BitSet) currentConstruct.mines.clone();
+                BitSet newIllegals = (BitSet) currentConstruct.illegalSpaces.clone();
 
                 boolean isValidLayout = true;
-
-                for (int i = -1; i <= 1; i++) {
-                    if (!isValidLayout) break;
-
-                    for (int j = -1; j <= 1; j++) {
-                        if (i == 0 && j == 0) continue;
-                        int neighborX = currentActiveSpace.x + j;
-                        int neighborY = currentActiveSpace.y + i;
-                        if (neighborX < 0 || neighborX >= gridWidth || neighborY < 0 || neighborY >= gridHeight) continue;
-                        Vector2Int neighbor = new Vector2Int(neighborX, neighborY);
-
-                        if (newFocusMap.containsKey(neighbor) && newFocusMap.get(neighbor) == TileID.HIDDEN.id) { // Layout Template only considers hidden spaces, so only count thos
-                            if (layoutTemplate.charAt(positionInTemplate) == '0') newIllegals.add(neighbor);
-                            else if (layoutTemplate.charAt(positionInTemplate) == '1') {
-                                if (newIllegals.contains(neighbor)) { // tried to put a flag in an illegal space. Invalidate the layout
-                                    isValidLayout = false;
-                                    break;
-                                }
-                                else {
-                                    newFocusMap.put(neighbor, TileID.FLAGGED.id);
-                                }
-                            }
-                            positionInTemplate++; // move to the next character in the template
-                        }
-
+                for (int positionInTemplate = 0; positionInTemplate < hiddenTiles; positionInTemplate++) {
+                    int neighbor = neighbors[positionInTemplate];
+                    if ((layout & (1 << positionInTemplate)) == 0) newIllegals.set(neighbor);
+                    else if (newIllegals.get(neighbor)) { // tried to put a flag in an illegal space. Invalidate the layout
+                        isValidLayout = false;
+                        break;
                     }
+                    else newMines.set(neighbor);
                 }
 
-                if (!isValidLayout) continue; //if the layout isn't valid, don't bother to add it back to the queue. Skip to the next
+                if (!isValidLayout) { //if the layout isn't valid, don't bother to add it back to the queue. Skip to the next
+                    prunedByIllegalPlacement++;
+                    continue;
+                }
 
                 // STEP 3: If it's valid, add it to list of possible maps if it's finished, else put it back into the queue to be further developed
-                if (currentConstruct.nextActiveSpaceID + 1 >= activeSpaces.length) {
-                    possibleFocusMaps.add(newFocusMap);
+                if (currentConstruct.nextActiveSpaceID + 1 >= activeCells.length) {
+                    possibleLayouts.add(newMines);
                 }
                 else {
                     FocusMapConstruct newConstruct = new FocusMapConstruct();
-                    newConstruct.focusMap = newFocusMap;
+                    newConstruct.mines = newMines;
                     newConstruct.illegalSpaces = newIllegals;
                     newConstruct.nextActiveSpaceID = currentConstruct.nextActiveSpaceID + 1; // move to next active space
                     constructsToMake.add(newConstruct);
@@ -198,56 +765,333 @@ public class CaseworkAI {
             }
         }
 
-        return possibleFocusMaps;
+        for (int cell : focusCells) variableOfCell[cell] = -1; // Leave the scratch space clean for next time
+        SolverStatistics statistics = SolverStatistics.get();
+        if (statistics.isEnabled()) statistics.recordSearch(constructsExpanded, prunedByMineCount, prunedByIllegalPlacement, possibleLayouts.size());
+        return possibleLayouts;
     }
 
+    // Chance of a mine on every hidden tile. In BACKTRACKING mode this counts whole-board layouts, so it takes
+    // the total number of mines into account and also covers the tiles away from the frontier.
     public HashMap<Vector2Int, Float> determineProbabilities() {
-        HashSet<HashMap<Vector2Int, Integer>> possibilities = determinePossibilities();
+        determineProbabilityArray();
+        HashMap<Vector2Int, Float> ret = new HashMap<>();
+        for (int y = 0; y < gridHeight; y++) {
+            for (int x = 0; x < gridWidth; x++) {
+                float probability = getProbabilityAt(x, y);
+                if (!Float.isNaN(probability)) ret.put(new Vector2Int(x, y), probability);
+            }
+        }
+        return ret;
+    }
 
-        HashMap<Vector2Int, Integer> flagOccurrenceMap = new HashMap<>();
-        int possibilitiesLogged = 0;
+    // Same as determineProbabilities(), but as one float per tile (index y * width + x), with NaN for tiles that
+    // aren't hidden or that nothing could be worked out for. Interior tiles (hidden, but not next to a marker) are
+    // left at NaN too, since they all share getInteriorProbability(); getProbabilityAt() fills them in.
+    // Nothing gets boxed or hashed, and only the tiles on the frontier get written, so this is the one to use in a
+    // loop. The array gets reused by the next call, so copy it if it has to stick around.
+    public float[] determineProbabilityArray() {
+        // Checked once, so a call with the statistics off doesn't even read the clock
+        SolverStatistics statistics = SolverStatistics.get();
+        boolean measured = statistics.isEnabled();
+        long phaseStart = measured ? System.nanoTime() : 0;
 
-        for (HashMap<Vector2Int, Integer> p : possibilities) { // for each possibility
-            for (Vector2Int tile : p.keySet()) { // tally up the flags
-                flagOccurrenceMap.putIfAbsent(tile, 0);
-                if (p.get(tile) == TileID.FLAGGED.id) flagOccurrenceMap.put(tile, flagOccurrenceMap.get(tile) + 1);
-            }
-            possibilitiesLogged++;
+        update();
+        if (measured) phaseStart = statistics.recordPhase(SolverStatistics.Phase.IMPORT, phaseStart);
+        interiorProbability = Float.NaN;
+        exact = true;
+        for (int i = 0; i < shownCount; i++) {
+            probabilities[shownCells[i]] = Float.NaN;
+            errorMargins[shownCells[i]] = Float.NaN;
+            onFrontier[shownCells[i]] = false;
+        }
+        shownCount = 0;
+        if (solverMode == SolverMode.ENUMERATION) {
+            determineProbabilitiesByEnumeration(probabilities, measured ? statistics : null, phaseStart);
+            return probabilities;
+        }
+
+        updateRegions();
+        int frontierTiles = 0, peakFrontierSize = 0;
+        for (RegionSolution region : regions) {
+            for (int cell : region.frontier.cells) show(cell);
+            frontierTiles += region.frontier.getVariableCount();
+            peakFrontierSize = Math.max(peakFrontierSize, region.frontier.getVariableCount());
+        }
+        if (measured) {
+            statistics.recordCall(constraintCount, regions.size(), peakFrontierSize);
+            phaseStart = statistics.recordPhase(SolverStatistics.Phase.ACTIVE_SPACES, phaseStart);
         }
 
+        // Regions that no change reached keep their solution from last time, unless it was only an estimate.
+        // The rest go through the rules first, and only what they leave open gets enumerated.
+        ArrayList<RegionSolution> unsolvedRegions = new ArrayList<>();
+        ArrayList<Frontier> unsolved = new ArrayList<>();
+        for (RegionSolution region : regions) {
+            if (!region.solutions.isEmpty() && region.isExact()) continue;
+            region.parts.clear();
+            region.solutions.clear();
+            for (Frontier part : simplify(region.frontier)) region.parts.add(part.canonicalize());
+            unsolvedRegions.add(region);
+            unsolved.addAll(region.parts);
+        }
+
+        // Patterns that were solved before, here or anywhere else, come straight out of the solution cache
+        ArrayList<LayoutCounts> newSolutions = new ArrayList<>();
+        ArrayList<Frontier> uncached = new ArrayList<>();
+        for (Frontier frontier : unsolved) {
+            FrontierSolution cached = isCacheable(frontier) ? solutionCache.get(frontier, gridWidth) : null;
+            newSolutions.add(cached);
+            if (cached == null) uncached.add(frontier);
+        }
+
+        // With a time budget, exact solving gets the first half of it and whatever didn't finish gets estimated
+        long start = System.nanoTime();
+        long exactDeadline = timeBudget == 0 ? 0 : start + timeBudget / 2;
+        ArrayList<FrontierSolution> solved = new ArrayList<>();
+        if (solverMode == SolverMode.LINEAR_ALGEBRA) {
+            if (parallelSolver != null) solved.addAll(parallelSolver.solveAllByElimination(uncached, exactDeadline));
+            else for (Frontier frontier : uncached) solved.add(linearSolver.enumerate(frontier, exactDeadline));
+        } else if (parallelSolver != null) solved.addAll(parallelSolver.solveAll(uncached, exactDeadline));
+        else for (Frontier frontier : uncached) solved.add(backtrackingSolver.solve(frontier, new int[0], exactDeadline));
+        for (int i = 0, next = 0; i < newSolutions.size(); i++) {
+            if (newSolutions.get(i) != null) continue;
+            FrontierSolution solution = solved.get(next++);
+            newSolutions.set(i, solution);
+            if (solution != null && isCacheable(solution.frontier)) solutionCache.put(solution, gridWidth);
+        }
+        estimateUnfinished(unsolved, newSolutions, start + timeBudget);
+        if (measured) phaseStart = statistics.recordPhase(SolverStatistics.Phase.ENUMERATION, phaseStart);
+
+        int next = 0;
+        for (RegionSolution region : unsolvedRegions) {
+            for (int p = 0; p < region.parts.size(); p++) region.solutions.add(newSolutions.get(next++));
+        }
+        ArrayList<LayoutCounts> validSolutions = new ArrayList<>();
+        for (RegionSolution region : regions) {
+            if (region.isValid()) validSolutions.addAll(region.solutions); // Otherwise the markers contradict each other (probably a wrong flag), so there's nothing to say
+        }
+
+        combineSolutions(validSolutions, hiddenTiles - frontierTiles, probabilities);
+        for (LayoutCounts solution : validSolutions) {
+            if (!(solution instanceof FrontierEstimate estimate)) continue;
+            exact = false;
+            for (int v = 0; v < estimate.frontier.getVariableCount(); v++) errorMargins[estimate.frontier.cells[v]] = estimate.getErrorMargin(v);
+        }
+        if (measured) statistics.recordPhase(SolverStatistics.Phase.AGGREGATION, phaseStart);
+        return probabilities;
+    }
+
+    // Marks the tile as worked out on its own, so getProbabilityAt() reads it from the array and the next call clears it
+    private void show(int cell) {
+        if (onFrontier[cell]) return;
+        onFrontier[cell] = true;
+        shownCells[shownCount++] = cell;
+    }
+
+    // Settles whatever the cheap passes can, and splits the rest into pieces for the enumerator
+    private ArrayList<Frontier> simplify(Frontier frontier) {
+        ArrayList<Frontier> parts = new ArrayList<>();
+        if (rulePassEnabled) parts.addAll(ruleSolver.simplify(frontier));
+        else parts.add(frontier);
+        if (solverMode != SolverMode.LINEAR_ALGEBRA) return parts;
+
+        ArrayList<Frontier> ret = new ArrayList<>();
+        for (Frontier part : parts) ret.addAll(linearSolver.simplify(part));
+        return ret;
+    }
+
+    // Small frontiers solve faster than they can be looked up
+    private boolean isCacheable(Frontier frontier) {
+        return solutionCache.getCapacity() > 0 && frontier.getVariableCount() >= MIN_CACHED_VARIABLES;
+    }
+
+    // Splits what's left of the time budget evenly over the frontiers the exact solver gave up on,
+    // and replaces their missing solutions with Monte Carlo estimates
+    private void estimateUnfinished(ArrayList<Frontier> frontiers, ArrayList<LayoutCounts> solutions, long deadline) {
+        int unfinished = 0;
+        for (LayoutCounts solution : solutions) if (solution == null) unfinished++;
+        for (int i = 0; i < solutions.size(); i++) {
+            if (solutions.get(i) != null) continue;
+            long now = System.nanoTime();
+            long share = Math.max(1, (deadline - now) / unfinished--);
+            solutions.set(i, monteCarloSolver.estimate(frontiers.get(i), sampleBudget, now + share));
+        }
+    }
+
+    // Only the tiles the RuleSolver can settle on its own, without enumerating anything.
+    // 1 means a guaranteed mine and 0 a guaranteed safe tile, just like in determineProbabilities().
+    public HashMap<Vector2Int, Float> determineCertainTiles() {
         HashMap<Vector2Int, Float> ret = new HashMap<>();
-        for (Vector2Int tile : flagOccurrenceMap.keySet()) { // compute the percent chance of a flag in every given tile
-            ret.put(tile, (float) flagOccurrenceMap.get(tile) / possibilitiesLogged);
+        for (Frontier frontier : determineFrontiers()) {
+            int[] values = ruleSolver.solve(frontier);
+            if (values == null) continue;
+            for (int v = 0; v < values.length; v++) {
+                if (values[v] == RuleSolver.UNKNOWN) continue;
+                ret.put(new Vector2Int(frontier.cells[v] % gridWidth, frontier.cells[v] / gridWidth), (float) values[v]);
+            }
         }
         return ret;
     }
 
-    // Simple Data Structure to use for data storage in the queue for determinePossibilities()
-    private class FocusMapConstruct {
-        public int nextActiveSpaceID = 0;
-        public HashMap<Vector2Int, Integer> focusMap = new HashMap<>();
+    // One frontier region as updateRegions() built it, and the solutions of the parts the rules split it into
+    private static class RegionSolution {
+        public final Frontier frontier;
+        public boolean dissolved; // A change reached it, so it's not part of the frontier anymore
+        public final ArrayList<Frontier> parts = new ArrayList<>();
+        public final ArrayList<LayoutCounts> solutions = new ArrayList<>();
 
-        public HashSet<Vector2Int> illegalSpaces = new HashSet<>();
+        public RegionSolution(Frontier frontier) {
+            this.frontier = frontier;
+        }
 
-        @Override
-        public boolean equals(Object obj) {
-            if (obj.getClass() != FocusMapConstruct.class) return false;
-            FocusMapConstruct other = (FocusMapConstruct) obj;
-            return (nextActiveSpaceID == other.nextActiveSpaceID) &&
-                    (focusMap == other.focusMap) && (illegalSpaces == other.illegalSpaces);
+        public boolean isValid() {
+            for (LayoutCounts solution : solutions) {
+                if (!solution.hasLayouts()) return false;
+            }
+            return true;
         }
 
-        public HashMap<Vector2Int, Integer> cloneFocusMap() {
-            HashMap<Vector2Int, Integer> clone = new HashMap<>();
-            for (Vector2Int key : focusMap.keySet()) {
-                clone.put(key, focusMap.get(key));
+        public boolean isExact() {
+            for (LayoutCounts solution : solutions) {
+                if (!(solution instanceof FrontierSolution)) return false;
             }
-            return clone;
+            return true;
         }
+    }
+
+    // Puts the regions back together. A layout of the whole board is one layout from every region plus some way of
+    // spreading the leftover mines over the interior, so a combination with M frontier mines shows up
+    // C(interior, remaining - M) times. The weights are worked out in log space relative to the biggest one,
+    // and every region's counts are scaled down to at most 1, so nothing overflows however big the board is.
+    private void combineSolutions(ArrayList<LayoutCounts> solutions, int interiorTiles, float[] ret) {
+        int regions = solutions.size();
+        double[][] histograms = new double[regions][];
+        double[] scales = new double[regions];
+        for (int r = 0; r < regions; r++) {
+            LayoutCounts solution = solutions.get(r);
+            histograms[r] = new double[solution.getFrontier().getMaxMines() + 1];
+            double max = 0;
+            for (int m = 0; m < histograms[r].length; m++) max = Math.max(max, solution.getLayouts(m));
+            scales[r] = max;
+            for (int m = 0; m < histograms[r].length; m++) histograms[r][m] = solution.getLayouts(m) / max;
+        }
+
+        // Mine count distribution of the regions before each one
+        double[][] before = new double[regions + 1][];
+        before[0] = new double[]{1};
+        for (int r = 0; r < regions; r++) before[r + 1] = convolve(before[r], histograms[r]);
+        double[] total = before[regions];
 
-        public HashSet<Vector2Int> cloneIllegals() {
-            return new HashSet<>(illegalSpaces);
+        double[] logWeights = new double[total.length];
+        double maxLogWeight = Double.NEGATIVE_INFINITY;
+        for (int m = 0; m < total.length; m++) {
+            int leftover = remainingMines - m;
+            if (leftover < 0 || leftover > interiorTiles || total[m] == 0) logWeights[m] = Double.NEGATIVE_INFINITY;
+            else logWeights[m] = logBinomial(interiorTiles, leftover);
+            maxLogWeight = Math.max(maxLogWeight, logWeights[m]);
         }
-        
+
+        if (maxLogWeight == Double.NEGATIVE_INFINITY) { // No combination fits the mine count (wrong flags?), so fall back to each region on its own
+            for (int r = 0; r < regions; r++) {
+                Frontier frontier = solutions.get(r).getFrontier();
+                for (int v = 0; v < frontier.getVariableCount(); v++) {
+                    double mineLayouts = 0;
+                    for (int m = 0; m < histograms[r].length; m++) mineLayouts += solutions.get(r).getMineLayouts(v, m) / scales[r];
+                    double layouts = 0;
+                    for (double count : histograms[r]) layouts += count;
+                    ret[frontier.cells[v]] = (float) (mineLayouts / layouts);
+                }
+            }
+            return;
+        }
+
+        double[] weights = new double[total.length];
+        double totalWeight = 0;
+        double interiorMines = 0;
+        for (int m = 0; m < total.length; m++) {
+            weights[m] = Math.exp(logWeights[m] - maxLogWeight);
+            totalWeight += total[m] * weights[m];
+            interiorMines += total[m] * weights[m] * (remainingMines - m);
+        }
+        if (interiorTiles > 0) interiorProbability = (float) (interiorMines / interiorTiles / totalWeight);
+
+        // Weight of each region having m mines, summed over everything the other regions can do. Going backwards,
+        // `later` holds the weight of the regions up to r having M mines between them, summed over everything the
+        // regions after r can do, which makes this one pass instead of a separate convolution for every region.
+        double[] later = weights;
+        double[][] allRegionWeights = new double[regions][];
+        for (int r = regions - 1; r >= 0; r--) {
+            double[] regionWeights = new double[histograms[r].length];
+            double[] earlier = new double[before[r].length];
+            for (int b = 0; b < before[r].length; b++) {
+                for (int m = 0; m < regionWeights.length; m++) {
+                    regionWeights[m] += before[r][b] * later[b + m];
+                    earlier[b] += histograms[r][m] * later[b + m];
+                }
+            }
+            allRegionWeights[r] = regionWeights;
+            later = earlier;
+        }
+
+        for (int r = 0; r < regions; r++) {
+            double[] regionWeights = allRegionWeights[r];
+
+            // Same as totalWeight, but summed the same way as the tiles below so certain tiles come out at exactly 0 or 1
+            double regionTotal = 0;
+            LayoutCounts solution = solutions.get(r);
+            for (int m = 0; m < regionWeights.length; m++) regionTotal += solution.getLayouts(m) / scales[r] * regionWeights[m];
+
+            Frontier frontier = solution.getFrontier();
+            for (int v = 0; v < frontier.getVariableCount(); v++) {
+                double mineWeight = 0;
+                for (int m = 0; m < regionWeights.length; m++) mineWeight += solution.getMineLayouts(v, m) / scales[r] * regionWeights[m];
+                ret[frontier.cells[v]] = (float) (mineWeight / regionTotal);
+            }
+        }
+    }
+
+    private static double[] convolve(double[] a, double[] b) {
+        double[] ret = new double[a.length + b.length - 1];
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] == 0) continue;
+            for (int j = 0; j < b.length; j++) ret[i + j] += a[i] * b[j];
+        }
+        return ret;
+    }
+
+    // statistics is null when they're off
+    private void determineProbabilitiesByEnumeration(float[] ret, SolverStatistics statistics, long phaseStart) {
+        int[] activeCells = findActiveCells();
+        int[][] components = findComponents(activeCells);
+        if (statistics != null) phaseStart = statistics.recordPhase(SolverStatistics.Phase.ACTIVE_SPACES, phaseStart);
+
+        int peakFrontierSize = 0;
+        for (int[] component : components) { // Solve each independent region separately
+            int[] focusCells = determineFocusCells(component);
+            peakFrontierSize = Math.max(peakFrontierSize, focusCells.length);
+            HashSet<BitSet> layouts = determineLayouts(component, focusCells);
+            if (statistics != null) phaseStart = statistics.recordPhase(SolverStatistics.Phase.ENUMERATION, phaseStart);
+            if (layouts.isEmpty()) continue;
+
+            int[] flagOccurrences = new int[focusCells.length];
+            for (BitSet layout : layouts) { // tally up the flags
+                for (int i = layout.nextSetBit(0); i >= 0; i = layout.nextSetBit(i + 1)) flagOccurrences[i]++;
+            }
+
+            for (int i = 0; i < focusCells.length; i++) { // compute the percent chance of a flag in every given tile
+                ret[focusCells[i]] = (float) flagOccurrences[i] / layouts.size();
+                show(focusCells[i]);
+            }
+            if (statistics != null) phaseStart = statistics.recordPhase(SolverStatistics.Phase.AGGREGATION, phaseStart);
+        }
+        if (statistics != null) statistics.recordCall(activeCells.length, components.length, peakFrontierSize);
+    }
+
+    // Simple Data Structure to use for data storage in the queue for determineLayouts()
+    private static class FocusMapConstruct {
+        public int nextActiveSpaceID = 0;
+        public BitSet mines = new BitSet(); // Indexed like the focus cells
+        public BitSet illegalSpaces = new BitSet();
     }
 }
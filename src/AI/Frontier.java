@@ -0,0 +1,202 @@
+package AI;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+// One connected region of the frontier, written as constraints over hidden tiles.
+// Each variable is a hidden tile next to at least one marker, and each constraint says how many more mines
+// the variables around one marker have to hold. Regions don't share any variables, so they can be solved separately.
+public class Frontier {
+    public final int[] cells; // Grid index (y * width + x) of each variable
+    public final int[] constraintCells; // Grid index of each marker
+    public final int[] constraintMines; // Mines still missing around each marker
+    public final int[][] constraintVars; // Variables around each marker
+    public final int[][] varConstraints; // Markers around each variable
+
+    public Frontier(int[] cells, int[] constraintCells, int[] constraintMines, int[][] constraintVars) {
+        this.cells = cells;
+        this.constraintCells = constraintCells;
+        this.constraintMines = constraintMines;
+        this.constraintVars = constraintVars;
+
+        int[] constraintsPerVar = new int[cells.length];
+        for (int[] vars : constraintVars) {
+            for (int v : vars) constraintsPerVar[v]++;
+        }
+        varConstraints = new int[cells.length][];
+        for (int v = 0; v < cells.length; v++) varConstraints[v] = new int[constraintsPerVar[v]];
+        for (int c = 0; c < constraintVars.length; c++) {
+            for (int v : constraintVars[c]) varConstraints[v][--constraintsPerVar[v]] = c;
+        }
+    }
+
+    public int getVariableCount() {
+        return cells.length;
+    }
+
+    public int getConstraintCount() {
+        return constraintCells.length;
+    }
+
+    // Every variable sits next to a marker, so no layout can hold more mines than the markers ask for in total
+    public int getMaxMines() {
+        int sum = 0;
+        for (int mines : constraintMines) sum += Math.max(0, mines);
+        return Math.min(sum, cells.length);
+    }
+
+    // The same frontier with its variables and constraints sorted by grid index. Two copies of a pattern in
+    // different places then line up variable for variable, which is what SolutionCache needs.
+    public Frontier canonicalize() {
+        Integer[] varOrder = new Integer[cells.length];
+        for (int v = 0; v < varOrder.length; v++) varOrder[v] = v;
+        Arrays.sort(varOrder, (a, b) -> Integer.compare(cells[a], cells[b]));
+        Integer[] constraintOrder = new Integer[constraintCells.length];
+        for (int c = 0; c < constraintOrder.length; c++) constraintOrder[c] = c;
+        Arrays.sort(constraintOrder, (a, b) -> Integer.compare(constraintCells[a], constraintCells[b]));
+
+        int[] newIndex = new int[cells.length];
+        int[] newCells = new int[cells.length];
+        for (int v = 0; v < varOrder.length; v++) {
+            newIndex[varOrder[v]] = v;
+            newCells[v] = cells[varOrder[v]];
+        }
+        int[] newConstraintCells = new int[constraintCells.length];
+        int[] newConstraintMines = new int[constraintCells.length];
+        int[][] newConstraintVars = new int[constraintCells.length][];
+        for (int c = 0; c < constraintOrder.length; c++) {
+            int old = constraintOrder[c];
+            newConstraintCells[c] = constraintCells[old];
+            newConstraintMines[c] = constraintMines[old];
+            newConstraintVars[c] = new int[constraintVars[old].length];
+            for (int i = 0; i < newConstraintVars[c].length; i++) newConstraintVars[c][i] = newIndex[constraintVars[old][i]];
+            Arrays.sort(newConstraintVars[c]);
+        }
+        return new Frontier(newCells, newConstraintCells, newConstraintMines, newConstraintVars);
+    }
+
+    // Orders the variables so that each one comes right after the ones it shares markers with.
+    // Searching in this order finishes off constraints early, so bad branches get cut as soon as possible.
+    public int[] searchOrder() {
+        int[] order = new int[cells.length];
+        boolean[] queued = new boolean[cells.length];
+        int head = 0, tail = 0;
+        for (int start = 0; start < cells.length; start++) {
+            if (queued[start]) continue;
+            queued[start] = true;
+            order[tail++] = start;
+            while (head < tail) {
+                int v = order[head++];
+                for (int c : varConstraints[v]) {
+                    for (int neighbor : constraintVars[c]) {
+                        if (queued[neighbor]) continue;
+                        queued[neighbor] = true;
+                        order[tail++] = neighbor;
+                    }
+                }
+            }
+        }
+        return order;
+    }
+
+    // Splits the frontier up given a value (0, 1, or RuleSolver.UNKNOWN) for each variable. Decided tiles go into one
+    // frontier where every tile is its own constraint, so they can still go through the same solvers and weighting
+    // as the rest. The undecided ones fall apart into regions that only shared decided tiles.
+    public ArrayList<Frontier> split(int[] values) {
+        ArrayList<Frontier> ret = new ArrayList<>();
+        int variableCount = cells.length;
+        int decided = 0;
+        for (int value : values) if (value != RuleSolver.UNKNOWN) decided++;
+        if (decided == 0) {
+            ret.add(this);
+            return ret;
+        }
+
+        int[] decidedCells = new int[decided];
+        int[] decidedValues = new int[decided];
+        int[][] decidedVars = new int[decided][];
+        for (int v = 0, i = 0; v < variableCount; v++) {
+            if (values[v] == RuleSolver.UNKNOWN) continue;
+            decidedCells[i] = cells[v];
+            decidedValues[i] = values[v];
+            decidedVars[i] = new int[]{i};
+            i++;
+        }
+        ret.add(new Frontier(decidedCells, decidedCells.clone(), decidedValues, decidedVars));
+        if (decided == variableCount) return ret;
+
+        // Whatever is left falls apart into regions that only share decided tiles
+        int[] parents = new int[variableCount];
+        for (int v = 0; v < variableCount; v++) parents[v] = v;
+        for (int[] vars : constraintVars) {
+            int first = -1;
+            for (int v : vars) {
+                if (values[v] != RuleSolver.UNKNOWN) continue;
+                if (first == -1) first = v;
+                else parents[CaseworkAI.findRoot(parents, v)] = CaseworkAI.findRoot(parents, first);
+            }
+        }
+
+        // Count out each region's variables and constraints first, so everything can go straight into int arrays
+        int[] regionOfRoot = new int[variableCount];
+        Arrays.fill(regionOfRoot, -1);
+        int[] localIndex = new int[variableCount];
+        int regionCount = 0;
+        int[] variablesInRegion = new int[variableCount];
+        int[] constraintsInRegion = new int[variableCount];
+        for (int v = 0; v < variableCount; v++) {
+            if (values[v] != RuleSolver.UNKNOWN) continue;
+            int root = CaseworkAI.findRoot(parents, v);
+            if (regionOfRoot[root] == -1) regionOfRoot[root] = regionCount++;
+            localIndex[v] = variablesInRegion[regionOfRoot[root]]++;
+        }
+        int[] regionOfConstraint = new int[constraintCells.length];
+        for (int c = 0; c < constraintCells.length; c++) {
+            regionOfConstraint[c] = -1; // Every tile around it is decided
+            for (int v : constraintVars[c]) {
+                if (values[v] != RuleSolver.UNKNOWN) continue;
+                regionOfConstraint[c] = regionOfRoot[CaseworkAI.findRoot(parents, v)];
+                constraintsInRegion[regionOfConstraint[c]]++;
+                break;
+            }
+        }
+
+        int[][] regionCells = new int[regionCount][];
+        int[][] regionConstraintCells = new int[regionCount][];
+        int[][] regionConstraintMines = new int[regionCount][];
+        int[][][] regionConstraintVars = new int[regionCount][][];
+        for (int r = 0; r < regionCount; r++) {
+            regionCells[r] = new int[variablesInRegion[r]];
+            regionConstraintCells[r] = new int[constraintsInRegion[r]];
+            regionConstraintMines[r] = new int[constraintsInRegion[r]];
+            regionConstraintVars[r] = new int[constraintsInRegion[r]][];
+            constraintsInRegion[r] = 0; // Reused as the fill position below
+        }
+        for (int v = 0; v < variableCount; v++) {
+            if (values[v] != RuleSolver.UNKNOWN) continue;
+            regionCells[regionOfRoot[CaseworkAI.findRoot(parents, v)]][localIndex[v]] = cells[v];
+        }
+        for (int c = 0; c < constraintCells.length; c++) {
+            int r = regionOfConstraint[c];
+            if (r == -1) continue;
+            int i = constraintsInRegion[r]++;
+            regionConstraintCells[r][i] = constraintCells[c];
+            regionConstraintMines[r][i] = constraintMines[c];
+            int count = 0;
+            for (int v : constraintVars[c]) {
+                if (values[v] == RuleSolver.UNKNOWN) count++;
+                else regionConstraintMines[r][i] -= values[v];
+            }
+            regionConstraintVars[r][i] = new int[count];
+            count = 0;
+            for (int v : constraintVars[c]) {
+                if (values[v] == RuleSolver.UNKNOWN) regionConstraintVars[r][i][count++] = localIndex[v];
+            }
+        }
+
+        for (int r = 0; r < regionCount; r++) {
+            ret.add(new Frontier(regionCells[r], regionConstraintCells[r], regionConstraintMines[r], regionConstraintVars[r]));
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,90 @@
+package AI;
+
+// Weighted samples of a Frontier's mine layouts from MonteCarloSolver.
+// The weighted totals are unbiased estimates of the exact counts a FrontierSolution would hold.
+public class FrontierEstimate implements LayoutCounts {
+    public final Frontier frontier;
+    public long samples; // Every walk, including the ones that hit a dead end
+    // All the weights below are relative to 2^-weightExponent, the heaviest walk so far, so none of them are above 1.
+    // Only their ratios mean anything.
+    public int weightExponent = Integer.MAX_VALUE;
+    public double totalWeight;
+    public double totalSquaredWeight;
+    public final double[] mineWeights; // [variable]
+    public final double[] squaredMineWeights; // [variable]
+    public final double[] weightsByMines; // [mines in the layout]
+    public final double[][] mineWeightsByMines; // [variable][mines in the layout]
+
+    public FrontierEstimate(Frontier frontier) {
+        this.frontier = frontier;
+        mineWeights = new double[frontier.getVariableCount()];
+        squaredMineWeights = new double[frontier.getVariableCount()];
+        weightsByMines = new double[frontier.getMaxMines() + 1];
+        mineWeightsByMines = new double[frontier.getVariableCount()][frontier.getMaxMines() + 1];
+    }
+
+    // Weight of a walk that had `forced` forced steps (2^-forced), relative to the heaviest walk. If this walk is the
+    // new heaviest, everything summed so far gets scaled down to match first. Whatever underflows to 0 on the way
+    // was too light next to this walk to change any of the totals anyway.
+    double scaledWeight(int forced) {
+        if (forced < weightExponent) {
+            if (weightExponent != Integer.MAX_VALUE) rescale(forced - weightExponent);
+            weightExponent = forced;
+        }
+        return Math.scalb(1.0, weightExponent - forced);
+    }
+
+    // Multiplies every weight by 2^shift
+    private void rescale(int shift) {
+        totalWeight = Math.scalb(totalWeight, shift);
+        totalSquaredWeight = Math.scalb(totalSquaredWeight, 2 * shift);
+        for (int var = 0; var < mineWeights.length; var++) {
+            mineWeights[var] = Math.scalb(mineWeights[var], shift);
+            squaredMineWeights[var] = Math.scalb(squaredMineWeights[var], 2 * shift);
+            for (int m = 0; m < weightsByMines.length; m++) mineWeightsByMines[var][m] = Math.scalb(mineWeightsByMines[var][m], shift);
+        }
+        for (int m = 0; m < weightsByMines.length; m++) weightsByMines[m] = Math.scalb(weightsByMines[m], shift);
+    }
+
+    @Override
+    public Frontier getFrontier() {
+        return frontier;
+    }
+
+    @Override
+    public double getLayouts(int mines) {
+        return weightsByMines[mines];
+    }
+
+    @Override
+    public double getMineLayouts(int var, int mines) {
+        return mineWeightsByMines[var][mines];
+    }
+
+    @Override
+    public boolean hasLayouts() {
+        return totalWeight > 0;
+    }
+
+    // Estimated chance of a mine on the variable when every layout of this region is equally likely
+    public float getProbability(int var) {
+        if (totalWeight == 0) return Float.NaN;
+        return (float) (mineWeights[var] / totalWeight);
+    }
+
+    // Standard error of getProbability(), from the usual variance estimate for a ratio of weighted sums.
+    // Infinite until there are at least two samples that found a layout.
+    public float getStandardError(int var) {
+        if (totalWeight == 0 || samples < 2) return Float.POSITIVE_INFINITY;
+        double p = mineWeights[var] / totalWeight;
+        // Sum over samples of (w * (x - p))^2, using x^2 = x for a 0/1 variable
+        double squaredDeviation = (1 - 2 * p) * squaredMineWeights[var] + p * p * totalSquaredWeight;
+        double meanWeight = totalWeight / samples;
+        return (float) Math.sqrt(Math.max(0, squaredDeviation) / (samples - 1) / samples) / (float) meanWeight;
+    }
+
+    // Half the width of the ~95% confidence interval around getProbability()
+    public float getErrorMargin(int var) {
+        return 1.96f * getStandardError(var);
+    }
+}
@@ -0,0 +1,56 @@
+package AI;
+
+// Tally of every valid mine layout of a Frontier: how many there are, and how many put a mine on each variable.
+// Everything is also split up by the number of mines in the layout, so the regions can be weighted against the
+// total mine count of the board afterwards.
+public class FrontierSolution implements LayoutCounts {
+    public final Frontier frontier;
+    public long solutions;
+    public final long[] mineCounts;
+    public final long[] solutionsByMines; // [mines in the layout]
+    public final long[][] mineCountsByMines; // [variable][mines in the layout]
+
+    public FrontierSolution(Frontier frontier) {
+        this.frontier = frontier;
+        this.mineCounts = new long[frontier.getVariableCount()];
+        this.solutionsByMines = new long[frontier.getMaxMines() + 1];
+        this.mineCountsByMines = new long[frontier.getVariableCount()][frontier.getMaxMines() + 1];
+    }
+
+    @Override
+    public Frontier getFrontier() {
+        return frontier;
+    }
+
+    @Override
+    public double getLayouts(int mines) {
+        return solutionsByMines[mines];
+    }
+
+    @Override
+    public double getMineLayouts(int var, int mines) {
+        return mineCountsByMines[var][mines];
+    }
+
+    @Override
+    public boolean hasLayouts() {
+        return solutions > 0;
+    }
+
+    // Adds the tally of another part of the same frontier's search onto this one
+    public void add(FrontierSolution other) {
+        solutions += other.solutions;
+        for (int m = 0; m < solutionsByMines.length; m++) solutionsByMines[m] += other.solutionsByMines[m];
+        for (int v = 0; v < mineCounts.length; v++) {
+            mineCounts[v] += other.mineCounts[v];
+            for (int m = 0; m < solutionsByMines.length; m++) mineCountsByMines[v][m] += other.mineCountsByMines[v][m];
+        }
+    }
+
+    // Chance of a mine on the variable when every layout of this region is equally likely,
+    // or NaN if the frontier has no valid layouts at all
+    public float getProbability(int var) {
+        if (solutions == 0) return Float.NaN;
+        return (float) ((double) mineCounts[var] / solutions);
+    }
+}
@@ -0,0 +1,16 @@
+package AI;
+
+// How many mine layouts of a Frontier there are, split up by the number of mines in the layout.
+// Only the ratios between the numbers matter, so estimates can stand in for exact counts.
+public interface LayoutCounts {
+    Frontier getFrontier();
+
+    // Layouts with the given number of mines, for 0 to getFrontier().getMaxMines()
+    double getLayouts(int mines);
+
+    // Layouts with the given number of mines that put one on the variable
+    double getMineLayouts(int var, int mines);
+
+    // False if no valid layout was found, in which case the numbers mean nothing
+    boolean hasLayouts();
+}
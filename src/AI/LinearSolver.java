@@ -0,0 +1,416 @@
+package AI;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+// Treats a Frontier as a system of linear equations (one per marker, sum of its tiles = mines left) and brings it
+// to row echelon form with integer Gaussian elimination. Every tile is 0 or 1, so each row bounds what its tiles can
+// add up to, and a tile whose other value would put the row out of reach is forced. Forced tiles get substituted back
+// in and the whole thing repeats until nothing new comes out. Everything here is polynomial, so it still works on
+// frontiers that are far too long to enumerate. The columns without a pivot are the free variables: once they are
+// picked, every other undecided tile follows from the rows, so enumerate() only branches on those.
+// The rows are only eliminated forwards, never fully reduced. Reducing them finds barely any more forced tiles, but
+// it fills long, banded frontiers in until every row holds most of the free variables, which makes it cubic.
+// Not thread safe; use one solver per thread.
+public class LinearSolver {
+    private static final long MAX_COEFFICIENT = 1L << 40; // Give up on a frontier before the row arithmetic can overflow
+    private static final int DEADLINE_CHECK_INTERVAL = 4096; // Nodes between clock checks, nanoTime() isn't free
+
+    private int[] values;
+    private int[] freeVariables;
+    private int rank;
+    private ArrayList<Row> pivotRows; // The system in echelon form as of the last solve()
+    private boolean complete; // False if the last elimination stopped early because the numbers got too big
+
+    // Enumeration state, see enumerate()
+    private Frontier frontier;
+    private int[] steps; // Columns of the undecided variables, last column first
+    private int[] order;
+    private int[] pivotRowOf; // [column] = row that has it as its pivot, -1 for free columns
+    private int[][] columnRows; // [column][i] = row it appears in, other than as the pivot
+    private long[][] columnCoefs; // [column][i] = its coefficient in that row
+    private long[] rowPivotCoef, rowRhs;
+    private long[] rowSum; // Sum of the row's columns that are picked, times their coefficients
+    private int[] constraintMines; // Mines placed around each marker so far
+    private int[] constraintUnassigned; // Variables around each marker that haven't been decided yet
+    private int[] mineStack; // The variables currently holding a mine
+    private int mineStackSize;
+    private FrontierSolution solution;
+    private long deadline;
+    private long nodes, prunedByMineCount, prunedByPlacement;
+    private boolean aborted;
+
+    // The value every variable is forced to (0 or 1), or RuleSolver.UNKNOWN. Returns null if the markers contradict each other.
+    public int[] solve(Frontier frontier) {
+        values = new int[frontier.getVariableCount()];
+        Arrays.fill(values, RuleSolver.UNKNOWN);
+        freeVariables = new int[0];
+        rank = 0;
+        pivotRows = new ArrayList<>();
+        complete = true;
+
+        // Columns follow the search order, so neighbouring tiles end up next to each other and the rows stay sparse
+        int[] order = frontier.searchOrder();
+        int[] columnOf = new int[order.length];
+        for (int i = 0; i < order.length; i++) columnOf[order[i]] = i;
+
+        boolean progress = true;
+        while (progress) {
+            pivotRows = eliminate(frontier, columnOf);
+            if (pivotRows == null) return null;
+
+            progress = false;
+            for (Row row : pivotRows) {
+                int result = inferBounds(row, order);
+                if (result < 0) return null;
+                if (result > 0) progress = true;
+            }
+
+            if (!progress) {
+                rank = pivotRows.size();
+                boolean[] pivot = new boolean[order.length];
+                for (Row row : pivotRows) pivot[row.pivot] = true;
+                int count = 0;
+                for (int col = 0; col < order.length; col++) {
+                    if (!pivot[col] && values[order[col]] == RuleSolver.UNKNOWN) count++;
+                }
+                freeVariables = new int[count];
+                count = 0;
+                for (int col = 0; col < order.length; col++) {
+                    if (!pivot[col] && values[order[col]] == RuleSolver.UNKNOWN) freeVariables[count++] = order[col];
+                }
+            }
+        }
+        return values;
+    }
+
+    // The undecided variables without a pivot, as of the last solve()
+    public int[] getFreeVariables() {
+        return freeVariables;
+    }
+
+    // Number of independent equations left after the last solve()
+    public int getRank() {
+        return rank;
+    }
+
+    // Solves and splits the frontier into what got decided and what's left, see Frontier.split().
+    // If the markers contradict each other, the frontier comes back as it is and the enumerator gets to report that.
+    public ArrayList<Frontier> simplify(Frontier frontier) {
+        int[] result = solve(frontier);
+        if (result == null) {
+            ArrayList<Frontier> ret = new ArrayList<>();
+            ret.add(frontier);
+            return ret;
+        }
+        return frontier.split(result);
+    }
+
+    //region Enumeration
+
+    // Counts every mine layout of the frontier, like BacktrackingSolver, but only branches on the free variables.
+    // Columns get picked from the last one to the first. Every row's pivot is its first column, so by the time the
+    // search gets to a pivot the rest of its row is picked, and the pivot has to be whatever makes the row add up.
+    // If that isn't 0 or 1 the branch is dropped. The markers keep running totals on top of that, just like in
+    // BacktrackingSolver, so a branch never gets further than it would there and usually a lot less far.
+    // If the elimination had to stop early the rows don't cover every marker, so that frontier goes to
+    // BacktrackingSolver instead. Returns null if System.nanoTime() passes the deadline first (0 means no deadline).
+    public FrontierSolution enumerate(Frontier frontier, long deadline) {
+        int[] result = solve(frontier);
+        if (result == null) return new FrontierSolution(frontier); // The markers contradict each other, so there are no layouts
+        if (!complete) return new BacktrackingSolver().solve(frontier, new int[0], deadline);
+
+        this.frontier = frontier;
+        this.deadline = deadline;
+        nodes = 0;
+        prunedByMineCount = 0;
+        prunedByPlacement = 0;
+        aborted = false;
+        solution = new FrontierSolution(frontier);
+        mineStack = new int[frontier.getVariableCount()];
+        mineStackSize = 0;
+        constraintMines = new int[frontier.getConstraintCount()];
+        constraintUnassigned = new int[frontier.getConstraintCount()];
+        for (int c = 0; c < constraintUnassigned.length; c++) constraintUnassigned[c] = frontier.constraintVars[c].length;
+        buildEnumeration();
+
+        boolean valid = true;
+        for (int v = 0; v < values.length; v++) { // Settled by solve(), so they're the same in every layout
+            if (values[v] == RuleSolver.UNKNOWN) continue;
+            valid &= assign(v, values[v]);
+            if (values[v] == 1) mineStack[mineStackSize++] = v;
+        }
+        if (valid) search(0);
+
+        SolverStatistics statistics = SolverStatistics.get();
+        if (statistics.isEnabled()) statistics.recordSearch(nodes, prunedByMineCount, prunedByPlacement, solution.solutions);
+
+        FrontierSolution ret = aborted ? null : solution;
+        solution = null;
+        this.frontier = null;
+        return ret;
+    }
+
+    // Turns the rows into flat arrays, and lists the rows every column appears in
+    private void buildEnumeration() {
+        order = frontier.searchOrder();
+        int rows = pivotRows.size();
+        rowPivotCoef = new long[rows];
+        rowRhs = new long[rows];
+        rowSum = new long[rows];
+        pivotRowOf = new int[order.length];
+        Arrays.fill(pivotRowOf, -1);
+
+        int[] rowsPerColumn = new int[order.length];
+        for (Row row : pivotRows) {
+            for (int i = 0; i < row.size; i++) {
+                if (row.cols[i] != row.pivot) rowsPerColumn[row.cols[i]]++;
+            }
+        }
+        columnRows = new int[order.length][];
+        columnCoefs = new long[order.length][];
+        for (int col = 0; col < order.length; col++) {
+            columnRows[col] = new int[rowsPerColumn[col]];
+            columnCoefs[col] = new long[rowsPerColumn[col]];
+            rowsPerColumn[col] = 0;
+        }
+        for (int r = 0; r < rows; r++) {
+            Row row = pivotRows.get(r);
+            pivotRowOf[row.pivot] = r;
+            rowRhs[r] = row.rhs;
+            for (int i = 0; i < row.size; i++) {
+                int col = row.cols[i];
+                if (col == row.pivot) rowPivotCoef[r] = row.coefs[i];
+                else {
+                    columnRows[col][rowsPerColumn[col]] = r;
+                    columnCoefs[col][rowsPerColumn[col]++] = row.coefs[i];
+                }
+            }
+        }
+
+        int count = 0;
+        for (int v : order) if (values[v] == RuleSolver.UNKNOWN) count++;
+        steps = new int[count];
+        count = 0;
+        for (int col = order.length - 1; col >= 0; col--) {
+            if (values[order[col]] == RuleSolver.UNKNOWN) steps[count++] = col;
+        }
+    }
+
+    private void search(int depth) {
+        if (++nodes % DEADLINE_CHECK_INTERVAL == 0 && deadline != 0 && System.nanoTime() - deadline > 0) aborted = true;
+        if (aborted) return;
+        if (depth == steps.length) { // Every variable is decided and every marker is happy
+            solution.solutions++;
+            solution.solutionsByMines[mineStackSize]++;
+            for (int i = 0; i < mineStackSize; i++) {
+                solution.mineCounts[mineStack[i]]++;
+                solution.mineCountsByMines[mineStack[i]][mineStackSize]++;
+            }
+            return;
+        }
+
+        int col = steps[depth];
+        int r = pivotRowOf[col];
+        if (r < 0) { // Free, so try both
+            branch(depth, col, 0);
+            branch(depth, col, 1);
+            return;
+        }
+        long rest = rowRhs[r] - rowSum[r]; // What the pivot has to make up for
+        if (rest == 0) branch(depth, col, 0);
+        else if (rest == rowPivotCoef[r]) branch(depth, col, 1);
+        else prunedByPlacement++;
+    }
+
+    private void branch(int depth, int col, int value) {
+        int var = order[col];
+        if (assign(var, value)) {
+            if (value == 1) {
+                for (int i = 0; i < columnRows[col].length; i++) rowSum[columnRows[col][i]] += columnCoefs[col][i];
+                mineStack[mineStackSize++] = var;
+            }
+            search(depth + 1);
+            if (value == 1) {
+                mineStackSize--;
+                for (int i = 0; i < columnRows[col].length; i++) rowSum[columnRows[col][i]] -= columnCoefs[col][i];
+            }
+        }
+        unassign(var, value);
+    }
+
+    // Returns false if the assignment breaks one of the markers around the variable
+    private boolean assign(int var, int value) {
+        boolean tooMany = false, tooFew = false;
+        for (int c : frontier.varConstraints[var]) {
+            constraintUnassigned[c]--;
+            constraintMines[c] += value;
+            int needed = frontier.constraintMines[c];
+            if (constraintMines[c] > needed) tooMany = true;
+            else if (constraintMines[c] + constraintUnassigned[c] < needed) tooFew = true;
+        }
+        if (tooMany) prunedByMineCount++;
+        else if (tooFew) prunedByPlacement++;
+        return !tooMany && !tooFew;
+    }
+
+    private void unassign(int var, int value) {
+        for (int c : frontier.varConstraints[var]) {
+            constraintUnassigned[c]++;
+            constraintMines[c] -= value;
+        }
+    }
+
+    //endregion
+
+    // Row echelon form of the system with every decided variable substituted in.
+    // Returns null if a row reduces to 0 = something else.
+    private ArrayList<Row> eliminate(Frontier frontier, int[] columnOf) {
+        ArrayList<Row> pivotRows = new ArrayList<>();
+        Row[] rowOfPivot = new Row[columnOf.length];
+        for (int c = 0; c < frontier.getConstraintCount(); c++) {
+            Row row = new Row(frontier, c, columnOf, values);
+
+            // Knock out every column that already has a pivot. That brings in later columns of the pivot row only,
+            // which might have pivots of their own, so the column knocked out next is always a later one.
+            for (int i = 0; i < row.size; ) {
+                Row pivotRow = rowOfPivot[row.cols[i]];
+                if (pivotRow == null) {
+                    i++;
+                    continue;
+                }
+                if (!row.eliminate(pivotRow)) { // Numbers got too big, just use what we have so far
+                    complete = false;
+                    return pivotRows;
+                }
+                i = 0; // The columns moved around, start over. Only later columns came in, so this ends.
+            }
+            if (row.size == 0) {
+                if (row.rhs != 0) return null;
+                continue;
+            }
+
+            // Its first column becomes a new pivot. Every column left in it is later than that, which is what
+            // enumerate() relies on.
+            row.pivot = row.cols[0];
+            row.normalize();
+            rowOfPivot[row.pivot] = row;
+            pivotRows.add(row);
+        }
+        return pivotRows;
+    }
+
+    // Every variable has to be 0 or 1, so the row can only add up to something between the sum of its negative
+    // and the sum of its positive coefficients. Any variable whose wrong value would leave the right hand side out
+    // of that range is forced. Returns how many got decided, or -1 if the row can't be satisfied at all.
+    private int inferBounds(Row row, int[] order) {
+        long min = 0, max = 0;
+        for (int i = 0; i < row.size; i++) {
+            if (values[order[row.cols[i]]] != RuleSolver.UNKNOWN) continue; // Decided since this row was built
+            if (row.coefs[i] < 0) min += row.coefs[i];
+            else max += row.coefs[i];
+        }
+        long rhs = row.rhs;
+        for (int i = 0; i < row.size; i++) {
+            int value = values[order[row.cols[i]]];
+            if (value != RuleSolver.UNKNOWN) rhs -= row.coefs[i] * value;
+        }
+        if (rhs < min || rhs > max) return -1;
+
+        int decided = 0;
+        for (int i = 0; i < row.size; i++) {
+            int var = order[row.cols[i]];
+            if (values[var] != RuleSolver.UNKNOWN) continue;
+            long coef = row.coefs[i];
+            long abs = Math.abs(coef);
+            // Picking the value that moves the sum away from min (or max) by |coef| must still fit
+            if (min + abs > rhs) values[var] = coef > 0 ? 0 : 1;
+            else if (max - abs < rhs) values[var] = coef > 0 ? 1 : 0;
+            else continue;
+            decided++;
+        }
+        return decided;
+    }
+
+    // One sparse equation, sum of coefs[i] * x[cols[i]] = rhs, with the columns sorted
+    private static class Row {
+        public int pivot = -1; // Column this row solves for, -1 until it becomes a pivot row
+        public int[] cols;
+        public long[] coefs;
+        public int size;
+        public long rhs;
+
+        public Row(Frontier frontier, int c, int[] columnOf, int[] values) {
+            int[] vars = frontier.constraintVars[c];
+            cols = new int[vars.length];
+            coefs = new long[vars.length];
+            rhs = frontier.constraintMines[c];
+            for (int v : vars) {
+                if (values[v] != RuleSolver.UNKNOWN) rhs -= values[v];
+                else cols[size++] = columnOf[v];
+            }
+            Arrays.sort(cols, 0, size);
+            Arrays.fill(coefs, 0, size, 1);
+        }
+
+        public int indexOf(int col) {
+            int i = Arrays.binarySearch(cols, 0, size, col);
+            return i >= 0 ? i : -1;
+        }
+
+        // this = this * pivotCoef - pivotRow * ownCoef, which cancels pivotRow's pivot column out of this row.
+        // Returns false if the coefficients would get too big to trust.
+        public boolean eliminate(Row pivotRow) {
+            long a = pivotRow.coefs[pivotRow.indexOf(pivotRow.pivot)];
+            long b = coefs[indexOf(pivotRow.pivot)];
+
+            int[] newCols = new int[size + pivotRow.size];
+            long[] newCoefs = new long[size + pivotRow.size];
+            int n = 0, i = 0, j = 0;
+            while (i < size || j < pivotRow.size) {
+                int col;
+                long coef;
+                if (j >= pivotRow.size || (i < size && cols[i] < pivotRow.cols[j])) {
+                    col = cols[i];
+                    coef = coefs[i++] * a;
+                } else if (i >= size || pivotRow.cols[j] < cols[i]) {
+                    col = pivotRow.cols[j];
+                    coef = -pivotRow.coefs[j++] * b;
+                } else {
+                    col = cols[i];
+                    coef = coefs[i++] * a - pivotRow.coefs[j++] * b;
+                }
+                if (Math.abs(coef) > MAX_COEFFICIENT) return false;
+                if (coef == 0) continue;
+                newCols[n] = col;
+                newCoefs[n++] = coef;
+            }
+            cols = newCols;
+            coefs = newCoefs;
+            size = n;
+            rhs = rhs * a - pivotRow.rhs * b;
+            normalize();
+            return true;
+        }
+
+        // Divides out the common factor and makes the pivot coefficient positive
+        public void normalize() {
+            long gcd = Math.abs(rhs);
+            for (int i = 0; i < size; i++) gcd = gcd(gcd, Math.abs(coefs[i]));
+            if (gcd == 0) return;
+            if (pivot >= 0 && coefs[indexOf(pivot)] < 0) gcd = -gcd;
+            if (gcd == 1) return;
+            for (int i = 0; i < size; i++) coefs[i] /= gcd;
+            rhs /= gcd;
+        }
+
+        private static long gcd(long a, long b) {
+            while (b != 0) {
+                long t = a % b;
+                a = b;
+                b = t;
+            }
+            return a;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package AI;
+
+import java.util.SplittableRandom;
+
+// Estimates a Frontier's layout counts when it's too big to enumerate, with Knuth's random walk estimator.
+// Each sample walks down the same search tree as BacktrackingSolver, picking a random value that keeps every
+// marker satisfiable at each step. A walk that reaches the bottom found a layout, and gets weighted by how many
+// choices it had on the way down, which makes the weighted totals unbiased estimates of the exact counts.
+// It stops at a sample count or a deadline, whichever comes first, so callers get a hard cap on the time spent
+// and more accurate numbers the more time they give it.
+// Not thread safe; use one solver per thread.
+public class MonteCarloSolver {
+    private final SplittableRandom random;
+
+    private Frontier frontier;
+    private int[] order;
+    private int[] values;
+    private int[] constraintMines;
+    private int[] constraintUnassigned;
+
+    public MonteCarloSolver() {
+        this(new SplittableRandom());
+    }
+
+    public MonteCarloSolver(long seed) {
+        this(new SplittableRandom(seed));
+    }
+
+    private MonteCarloSolver(SplittableRandom random) {
+        this.random = random;
+    }
+
+    // Samples until maxSamples walks are done or System.nanoTime() passes the deadline (0 for no deadline).
+    // Always takes at least one sample.
+    public FrontierEstimate estimate(Frontier frontier, long maxSamples, long deadline) {
+        FrontierEstimate estimate = new FrontierEstimate(frontier);
+        sample(estimate, maxSamples, deadline);
+        return estimate;
+    }
+
+    // Adds more samples to an earlier estimate of the same frontier
+    public void sample(FrontierEstimate estimate, long maxSamples, long deadline) {
+        frontier = estimate.frontier;
+        order = frontier.searchOrder();
+        values = new int[frontier.getVariableCount()];
+        constraintMines = new int[frontier.getConstraintCount()];
+        constraintUnassigned = new int[frontier.getConstraintCount()];
+
+        long samples = 0;
+        do {
+            walk(estimate);
+            samples++;
+        } while (samples < maxSamples && (deadline == 0 || System.nanoTime() - deadline < 0));
+        frontier = null;
+    }
+
+    private void walk(FrontierEstimate estimate) {
+        for (int c = 0; c < constraintMines.length; c++) {
+            constraintMines[c] = 0;
+            constraintUnassigned[c] = frontier.constraintVars[c].length;
+        }
+
+        // A walk's weight is 2^-forced: halved at every step and doubled back for every real choice, so it stays at
+        // most 1 instead of growing to 2^depth. Only the ratios matter, but a double runs out at 2^-1074, so the
+        // exponent gets counted here and the estimate turns it into a weight relative to its heaviest walk.
+        int forced = 0;
+        int mines = 0;
+        estimate.samples++;
+        for (int var : order) {
+            boolean clearFits = fits(var, 0);
+            boolean mineFits = fits(var, 1);
+            int value;
+            if (clearFits && mineFits) value = random.nextInt(2);
+            else if (clearFits) {
+                value = 0;
+                forced++;
+            } else if (mineFits) {
+                value = 1;
+                forced++;
+            } else return; // Dead end, weight 0
+
+            values[var] = value;
+            mines += value;
+            for (int c : frontier.varConstraints[var]) {
+                constraintUnassigned[c]--;
+                constraintMines[c] += value;
+            }
+        }
+
+        double weight = estimate.scaledWeight(forced);
+        double squaredWeight = weight * weight;
+        estimate.totalWeight += weight;
+        estimate.totalSquaredWeight += squaredWeight;
+        estimate.weightsByMines[mines] += weight;
+        for (int var = 0; var < values.length; var++) {
+            if (values[var] == 0) continue;
+            estimate.mineWeights[var] += weight;
+            estimate.squaredMineWeights[var] += squaredWeight;
+            estimate.mineWeightsByMines[var][mines] += weight;
+        }
+    }
+
+    // Whether every marker around the variable can still be satisfied if it takes this value
+    private boolean fits(int var, int value) {
+        for (int c : frontier.varConstraints[var]) {
+            int placed = constraintMines[c] + value;
+            int needed = frontier.constraintMines[c];
+            if (placed > needed || placed + constraintUnassigned[c] - 1 < needed) return false;
+        }
+        return true;
+    }
+}
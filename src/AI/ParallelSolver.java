@@ -0,0 +1,106 @@
+package AI;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Function;
+
+// Runs BacktrackingSolver on a ForkJoinPool. Every frontier region is its own task, and big regions get their
+// search tree split further by fixing the first few variables, so idle threads can steal the branches.
+// The counts are exact integers that just get added up, so the results are identical to solving sequentially.
+// solveAllByElimination() runs LinearSolver.enumerate() instead, one task per frontier, since that search can't be
+// split up by prefix.
+public class ParallelSolver {
+    private static final int MIN_SPLIT_VARIABLES = 16; // Below this a region solves faster than a task can be scheduled
+    private static final int EXTRA_SPLIT_DEPTH = 3; // Make ~8x more branches than threads so the stealing can even things out
+
+    private final ForkJoinPool pool;
+    private final int splitDepth;
+
+    public ParallelSolver(int parallelism) {
+        pool = new ForkJoinPool(parallelism);
+        splitDepth = 32 - Integer.numberOfLeadingZeros(parallelism) + EXTRA_SPLIT_DEPTH;
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    public ArrayList<FrontierSolution> solveAll(List<Frontier> frontiers) {
+        return solveAll(frontiers, 0);
+    }
+
+    // Returns one solution per frontier, in the same order. Frontiers that weren't done by the deadline
+    // (a System.nanoTime() value, 0 for none) get null instead.
+    public ArrayList<FrontierSolution> solveAll(List<Frontier> frontiers, long deadline) {
+        return invokeAll(frontiers, frontier -> new BranchTask(frontier, new int[0], splitDepth, deadline));
+    }
+
+    // Like solveAll(), but counts every frontier with LinearSolver.enumerate()
+    public ArrayList<FrontierSolution> solveAllByElimination(List<Frontier> frontiers, long deadline) {
+        return invokeAll(frontiers, frontier -> new RecursiveTask<>() {
+            @Override
+            protected FrontierSolution compute() {
+                return new LinearSolver().enumerate(frontier, deadline);
+            }
+        });
+    }
+
+    private ArrayList<FrontierSolution> invokeAll(List<Frontier> frontiers, Function<Frontier, RecursiveTask<FrontierSolution>> taskFactory) {
+        return pool.invoke(new RecursiveTask<>() {
+            @Override
+            protected ArrayList<FrontierSolution> compute() {
+                ArrayList<RecursiveTask<FrontierSolution>> tasks = new ArrayList<>();
+                for (Frontier frontier : frontiers) tasks.add(taskFactory.apply(frontier));
+                invokeAll(tasks);
+
+                ArrayList<FrontierSolution> ret = new ArrayList<>();
+                for (RecursiveTask<FrontierSolution> task : tasks) ret.add(task.join());
+                return ret;
+            }
+        });
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    // Solves the part of a frontier's search tree that starts with the given prefix.
+    // ForkJoinTask is Serializable, but these never leave the pool they were made for.
+    private static class BranchTask extends RecursiveTask<FrontierSolution> {
+        private static final long serialVersionUID = 1L;
+
+        private final Frontier frontier;
+        private final int[] prefix;
+        private final int splitDepth;
+        private final long deadline;
+
+        public BranchTask(Frontier frontier, int[] prefix, int splitDepth, long deadline) {
+            this.frontier = frontier;
+            this.prefix = prefix;
+            this.splitDepth = splitDepth;
+            this.deadline = deadline;
+        }
+
+        @Override
+        protected FrontierSolution compute() {
+            // With enough threads the split depth can pass the number of variables, and the prefix can't be longer than that
+            if (frontier.getVariableCount() < MIN_SPLIT_VARIABLES || prefix.length >= Math.min(splitDepth, frontier.getVariableCount())) {
+                return new BacktrackingSolver().solve(frontier, prefix, deadline);
+            }
+
+            int[] clearPrefix = Arrays.copyOf(prefix, prefix.length + 1);
+            int[] minePrefix = Arrays.copyOf(prefix, prefix.length + 1);
+            minePrefix[prefix.length] = 1;
+            BranchTask mineBranch = new BranchTask(frontier, minePrefix, splitDepth, deadline);
+            mineBranch.fork();
+            FrontierSolution ret = new BranchTask(frontier, clearPrefix, splitDepth, deadline).compute();
+            FrontierSolution mineSolution = mineBranch.join();
+            if (ret == null || mineSolution == null) return null; // Ran out of time somewhere, so the tally is incomplete
+            ret.add(mineSolution);
+            return ret;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package AI;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+// Cheap deductions on a Frontier before anything has to be enumerated.
+// Single marker rules: a marker with no mines left makes all its tiles safe, and one with as many mines left as
+// hidden tiles makes them all mines. Pair rules: two markers sharing tiles bound how many mines the shared tiles
+// can hold, which can settle the tiles only one of them sees (this covers the usual subset and 1-2 patterns).
+// Each marker is only looked at again when one of its tiles gets decided, so a pass takes linear time.
+// Not thread safe; use one solver per thread.
+public class RuleSolver {
+    public static final int UNKNOWN = -1;
+
+    private Frontier frontier;
+    private int[] values;
+    private int[] needed; // Mines still missing around each marker, not counting decided tiles
+    private int[] unknowns; // Undecided tiles around each marker
+    private int[] queue;
+    private int queueHead, queueSize;
+    private boolean[] queued;
+    private int[] stamps; // Which marker last marked each variable, for the pair rules
+    private int stamp;
+    private final int[] checked = new int[24]; // Markers the current one has already been paired with
+    private boolean contradiction;
+
+    // The value every variable is forced to (0 or 1), or UNKNOWN. Returns null if the markers contradict each other.
+    public int[] solve(Frontier frontier) {
+        this.frontier = frontier;
+        int constraints = frontier.getConstraintCount();
+        values = new int[frontier.getVariableCount()];
+        Arrays.fill(values, UNKNOWN);
+        needed = Arrays.copyOf(frontier.constraintMines, constraints);
+        unknowns = new int[constraints];
+        for (int c = 0; c < constraints; c++) unknowns[c] = frontier.constraintVars[c].length;
+        queue = new int[constraints];
+        queued = new boolean[constraints];
+        queueHead = 0;
+        queueSize = 0;
+        stamps = new int[frontier.getVariableCount()];
+        stamp = 0;
+        contradiction = false;
+
+        for (int c = 0; c < constraints; c++) enqueue(c);
+        while (queueSize > 0 && !contradiction) {
+            int c = queue[queueHead];
+            queueHead = (queueHead + 1) % queue.length;
+            queueSize--;
+            queued[c] = false;
+            applyRules(c);
+        }
+
+        int[] ret = contradiction ? null : values;
+        frontier = null;
+        values = null;
+        return ret;
+    }
+
+    // Runs the rules and splits the frontier into what they decided and what they left open, see Frontier.split().
+    // If the markers contradict each other, the frontier comes back as it is and the solver gets to report that.
+    public ArrayList<Frontier> simplify(Frontier frontier) {
+        int[] values = solve(frontier);
+        if (values == null) {
+            ArrayList<Frontier> ret = new ArrayList<>();
+            ret.add(frontier);
+            return ret;
+        }
+        return frontier.split(values);
+    }
+
+    private void enqueue(int c) {
+        if (queued[c]) return;
+        queued[c] = true;
+        queue[(queueHead + queueSize) % queue.length] = c;
+        queueSize++;
+    }
+
+    private void applyRules(int c) {
+        if (needed[c] < 0 || needed[c] > unknowns[c]) {
+            contradiction = true;
+            return;
+        }
+        if (unknowns[c] == 0) return;
+        if (needed[c] == 0 || needed[c] == unknowns[c]) {
+            int value = needed[c] == 0 ? 0 : 1;
+            for (int v : frontier.constraintVars[c]) {
+                if (values[v] == UNKNOWN) set(v, value);
+            }
+            return;
+        }
+
+        // Pair rules against every marker that shares an undecided tile with this one
+        int cStamp = ++stamp;
+        for (int v : frontier.constraintVars[c]) if (values[v] == UNKNOWN) stamps[v] = cStamp;
+        int checkedCount = 0;
+        for (int v : frontier.constraintVars[c]) {
+            if (values[v] != UNKNOWN) continue;
+            for (int d : frontier.varConstraints[v]) {
+                if (d == c || contains(checked, checkedCount, d)) continue;
+                checked[checkedCount++] = d; // Markers can only share tiles with the 24 around them, so this never fills up
+                if (applyPairRule(c, d, cStamp) || contradiction) return; // If something got decided, c is back in the queue anyway
+            }
+        }
+    }
+
+    // Bounds the mines in the tiles c and d share, and uses that to settle the tiles only one of them sees.
+    // Expects c's undecided tiles to be stamped with cStamp. Returns true if anything was decided.
+    private boolean applyPairRule(int c, int d, int cStamp) {
+        int shared = 0;
+        for (int v : frontier.constraintVars[d]) {
+            if (values[v] == UNKNOWN && stamps[v] == cStamp) shared++;
+        }
+        int onlyC = unknowns[c] - shared;
+        int onlyD = unknowns[d] - shared;
+        if (onlyC == 0 && onlyD == 0) return false;
+
+        int minShared = Math.max(0, Math.max(needed[c] - onlyC, needed[d] - onlyD));
+        int maxShared = Math.min(shared, Math.min(needed[c], needed[d]));
+        if (minShared > maxShared) {
+            contradiction = true;
+            return false;
+        }
+
+        int onlyCValue = UNKNOWN, onlyDValue = UNKNOWN;
+        if (onlyC > 0 && needed[c] - minShared == 0) onlyCValue = 0;
+        else if (onlyC > 0 && needed[c] - maxShared == onlyC) onlyCValue = 1;
+        if (onlyD > 0 && needed[d] - minShared == 0) onlyDValue = 0;
+        else if (onlyD > 0 && needed[d] - maxShared == onlyD) onlyDValue = 1;
+        if (onlyCValue == UNKNOWN && onlyDValue == UNKNOWN) return false;
+
+        // Collect both sides before setting anything, since setting changes which tiles count as undecided
+        int[] cVars = frontier.constraintVars[c];
+        int[] dVars = frontier.constraintVars[d];
+        int[] onlyCVars = new int[onlyC];
+        int[] onlyDVars = new int[onlyD];
+        int count = 0;
+        for (int v : cVars) {
+            if (values[v] == UNKNOWN && !contains(dVars, dVars.length, v)) onlyCVars[count++] = v;
+        }
+        count = 0;
+        for (int v : dVars) {
+            if (values[v] == UNKNOWN && stamps[v] != cStamp) onlyDVars[count++] = v;
+        }
+        if (onlyCValue != UNKNOWN) for (int v : onlyCVars) set(v, onlyCValue);
+        if (onlyDValue != UNKNOWN) for (int v : onlyDVars) set(v, onlyDValue);
+        return true;
+    }
+
+    private static boolean contains(int[] array, int length, int value) {
+        for (int i = 0; i < length; i++) if (array[i] == value) return true;
+        return false;
+    }
+
+    private void set(int var, int value) {
+        values[var] = value;
+        for (int c : frontier.varConstraints[var]) {
+            unknowns[c]--;
+            needed[c] -= value;
+            enqueue(c);
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package AI;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Remembers the solutions of recently solved frontiers, so a region that shows up again (or the same pattern
+// somewhere else on the board) is a lookup instead of another search. Frontiers have to be canonical
+// (see Frontier.canonicalize()) so that the variables of two copies of the same pattern line up.
+// The key is a Zobrist hash of the pattern's hidden tiles and markers, relative to its top left corner, and the
+// full pattern is compared on top of that so collisions can't hand back a wrong solution.
+// It's bounded both by a number of entries and by their estimated size in bytes, since one solution of a big region
+// (variables x possible mine counts) can weigh as much as thousands of small ones. Least recently used entries get
+// evicted once either one runs out, and solutions too big to take up less than a quarter of the byte budget
+// don't get cached at all. Not thread safe.
+public class SolutionCache {
+    public static final long DEFAULT_MAX_BYTES = 16L << 20;
+
+    private final LinkedHashMap<Key, FrontierSolution> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private int capacity;
+    private long maxBytes;
+    private long bytes; // Estimated size of everything in entries, see weightOf()
+    private long hits, misses, evictions, rejections;
+
+    public SolutionCache(int capacity) {
+        this(capacity, DEFAULT_MAX_BYTES);
+    }
+
+    public SolutionCache(int capacity, long maxBytes) {
+        setCapacity(capacity);
+        setMaxBytes(maxBytes);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public void setCapacity(int capacity) {
+        if (capacity < 0) throw new IllegalArgumentException("Capacity can't be negative");
+        this.capacity = capacity;
+        trim();
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public void setMaxBytes(long maxBytes) {
+        if (maxBytes < 0) throw new IllegalArgumentException("Byte limit can't be negative");
+        this.maxBytes = maxBytes;
+        trim();
+    }
+
+    // Estimated heap use of everything in the cache
+    public long getBytes() {
+        return bytes;
+    }
+
+    // Evicts the least recently used entries until both limits hold again. Oldest first, since it's in access order.
+    private void trim() {
+        Iterator<Map.Entry<Key, FrontierSolution>> iterator = entries.entrySet().iterator();
+        while ((entries.size() > capacity || bytes > maxBytes) && iterator.hasNext()) {
+            Map.Entry<Key, FrontierSolution> eldest = iterator.next();
+            bytes -= weightOf(eldest.getKey(), eldest.getValue());
+            iterator.remove();
+            evictions++;
+        }
+    }
+
+    // A solution for the frontier if the same pattern was solved before, otherwise null
+    public FrontierSolution get(Frontier frontier, int gridWidth) {
+        FrontierSolution cached = entries.get(new Key(frontier, gridWidth));
+        if (cached == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        FrontierSolution ret = new FrontierSolution(frontier); // Same counts, but for this copy's tiles
+        ret.add(cached);
+        return ret;
+    }
+
+    public void put(FrontierSolution solution, int gridWidth) {
+        if (capacity == 0) return;
+        Key key = new Key(solution.frontier, gridWidth);
+        long weight = weightOf(key, solution);
+        if (weight > maxBytes / 4) { // Would push out too much of everything else
+            rejections++;
+            return;
+        }
+        FrontierSolution old = entries.put(key, solution);
+        if (old != null) bytes -= weightOf(key, old);
+        bytes += weight;
+        trim();
+    }
+
+    // Rough heap size of an entry: the solution's count arrays, the frontier they belong to and the key's pattern,
+    // plus about 16 bytes of header for every array. It only has to be in the right ballpark, and the same every time.
+    private static long weightOf(Key key, FrontierSolution solution) {
+        Frontier frontier = solution.frontier;
+        long variables = frontier.getVariableCount();
+        long constraints = frontier.getConstraintCount();
+        long mineCounts = solution.solutionsByMines.length;
+        long constraintVars = 0;
+        for (int[] vars : frontier.constraintVars) constraintVars += vars.length;
+
+        long counts = 8 * (variables * mineCounts + variables + mineCounts); // mineCountsByMines, mineCounts, solutionsByMines
+        long layout = 4 * (variables + 2 * constraints + 2 * constraintVars); // cells, constraint cells and mines, both adjacency lists
+        long pattern = 4L * key.pattern.length;
+        long headers = 16 * (variables + constraints + 12);
+        return counts + layout + pattern + headers;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    // Solutions that were too big to be worth caching
+    public long getRejections() {
+        return rejections;
+    }
+
+    public void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    public void resetStatistics() {
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+        rejections = 0;
+    }
+
+    @Override
+    public String toString() {
+        return "SolutionCache[" + entries.size() + "/" + capacity + " entries, " + bytes / 1024 + "/" + maxBytes / 1024 + " KB, "
+                + hits + " hits, " + misses + " misses, " + evictions + " evictions, " + rejections + " rejected]";
+    }
+
+    private static class Key {
+        private static final int VARIABLE = 0; // Markers are 1 + their remaining mines
+
+        private final long hash;
+        private final int[] pattern; // Relative positions, remaining mines and the variables of every constraint
+
+        public Key(Frontier frontier, int gridWidth) {
+            int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE;
+            for (int cell : frontier.cells) {
+                minX = Math.min(minX, cell % gridWidth);
+                minY = Math.min(minY, cell / gridWidth);
+            }
+            for (int cell : frontier.constraintCells) {
+                minX = Math.min(minX, cell % gridWidth);
+                minY = Math.min(minY, cell / gridWidth);
+            }
+
+            int length = 2 + frontier.cells.length * 2;
+            for (int[] vars : frontier.constraintVars) length += 4 + vars.length;
+            pattern = new int[length];
+            int i = 0;
+            pattern[i++] = frontier.cells.length;
+            pattern[i++] = frontier.constraintCells.length;
+            long h = 0;
+            for (int cell : frontier.cells) {
+                int x = cell % gridWidth - minX;
+                int y = cell / gridWidth - minY;
+                pattern[i++] = x;
+                pattern[i++] = y;
+                h ^= zobrist(x, y, VARIABLE);
+            }
+            for (int c = 0; c < frontier.constraintCells.length; c++) {
+                int x = frontier.constraintCells[c] % gridWidth - minX;
+                int y = frontier.constraintCells[c] / gridWidth - minY;
+                pattern[i++] = x;
+                pattern[i++] = y;
+                pattern[i++] = frontier.constraintMines[c];
+                pattern[i++] = frontier.constraintVars[c].length;
+                for (int v : frontier.constraintVars[c]) pattern[i++] = v;
+                h ^= zobrist(x, y, 1 + frontier.constraintMines[c]);
+            }
+            hash = h;
+        }
+
+        // A random looking number for each tile and what's on it, made on the fly instead of kept in a table.
+        // This is the SplitMix64 finalizer.
+        private static long zobrist(int x, int y, int kind) {
+            long z = ((long) x << 40) ^ ((long) y << 16) ^ (kind & 0xFFFF);
+            z += 0x9E3779B97F4A7C15L;
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            return z ^ (z >>> 31);
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(hash);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key other)) return false;
+            return hash == other.hash && Arrays.equals(pattern, other.pattern);
+        }
+    }
+}
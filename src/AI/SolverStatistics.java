@@ -0,0 +1,257 @@
+package AI;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+// Counters and timers from inside the solver, summed over every CaseworkAI in the JVM, for finding out why a call
+// was slow. Off by default: start the JVM with -Dminesweeper.solverStatistics=true or call setEnabled(true).
+// The MBean only gets registered once statistics are turned on (or registerMBean() is called by hand), so normal
+// runs don't pay for JMX at startup. After that the Enabled attribute can be flipped over JMX as well.
+// While it's off, the solver only checks isEnabled() once per call and skips everything else. While it's on, the
+// solvers keep plain counters as they go and hand them over once per solve, so the adders never end up in a hot loop.
+public class SolverStatistics implements SolverStatisticsMBean {
+    public static final String OBJECT_NAME = "Minesweeper:type=SolverStatistics";
+    private static final SolverStatistics INSTANCE = new SolverStatistics();
+
+    // Where the time of a determineProbabilities() call goes
+    public enum Phase {
+        IMPORT, // Reading the board, in full (importGrid) or just the changes (update)
+        ACTIVE_SPACES, // Finding the markers next to hidden tiles and splitting them into independent frontiers
+        ENUMERATION, // Working out the layouts of every frontier: rules, elimination, search, sampling
+        AGGREGATION // Turning the layouts into probabilities, mine count weighting included
+    }
+
+    private static final AtomicBoolean registered = new AtomicBoolean();
+
+    private volatile boolean enabled = Boolean.getBoolean("minesweeper.solverStatistics");
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder activeSpaces = new LongAdder();
+    private final LongAdder frontiers = new LongAdder();
+    private final LongAdder constructsExpanded = new LongAdder(); // Queue entries in ENUMERATION mode, search nodes otherwise
+    private final LongAdder prunedByMineCount = new LongAdder(); // A marker ended up with more mines than it shows
+    private final LongAdder prunedByIllegalPlacement = new LongAdder(); // A mine where it can't go, or a marker that can't get enough
+    private final LongAdder possibilities = new LongAdder(); // Complete layouts found
+    private final LongAccumulator peakFrontierSize = new LongAccumulator(Math::max, 0); // Most hidden tiles in one frontier
+
+    private final LongAdder[] phaseNanos = new LongAdder[Phase.values().length];
+    private final LongAccumulator[] maxPhaseNanos = new LongAccumulator[Phase.values().length];
+
+    private SolverStatistics() {
+        for (int i = 0; i < phaseNanos.length; i++) {
+            phaseNanos[i] = new LongAdder();
+            maxPhaseNanos[i] = new LongAccumulator(Math::max, 0);
+        }
+    }
+
+    public static SolverStatistics get() {
+        return INSTANCE;
+    }
+
+    // Makes the statistics visible over JMX. Safe to call more than once.
+    public static void registerMBean() {
+        if (registered.getAndSet(true)) return;
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, new ObjectName(OBJECT_NAME));
+        } catch (InstanceAlreadyExistsException e) {
+            // Already there
+        } catch (JMException e) {
+            registered.set(false);
+            throw new IllegalStateException("Couldn't register " + OBJECT_NAME, e);
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        if (enabled) registerMBean(); // Whoever turned them on probably wants to look at them
+    }
+
+    //region Recording
+
+    // These get called by the solvers, and only after they checked isEnabled()
+
+    void recordCall(int activeSpaces, int frontiers, int peakFrontierSize) {
+        calls.increment();
+        this.activeSpaces.add(activeSpaces);
+        this.frontiers.add(frontiers);
+        this.peakFrontierSize.accumulate(peakFrontierSize);
+    }
+
+    void recordSearch(long constructs, long prunedByMineCount, long prunedByIllegalPlacement, long possibilities) {
+        constructsExpanded.add(constructs);
+        this.prunedByMineCount.add(prunedByMineCount);
+        this.prunedByIllegalPlacement.add(prunedByIllegalPlacement);
+        this.possibilities.add(possibilities);
+    }
+
+    // Adds the time since start to the phase and returns the current time, which is where the next phase starts
+    long recordPhase(Phase phase, long start) {
+        long now = System.nanoTime();
+        phaseNanos[phase.ordinal()].add(now - start);
+        maxPhaseNanos[phase.ordinal()].accumulate(now - start);
+        return now;
+    }
+
+    //endregion
+
+    //region Reading
+
+    // Every counter at once. Counters that change while this is being taken might be off by the odd solve.
+    public Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    @Override
+    public void reset() {
+        calls.reset();
+        activeSpaces.reset();
+        frontiers.reset();
+        constructsExpanded.reset();
+        prunedByMineCount.reset();
+        prunedByIllegalPlacement.reset();
+        possibilities.reset();
+        peakFrontierSize.reset();
+        for (int i = 0; i < phaseNanos.length; i++) {
+            phaseNanos[i].reset();
+            maxPhaseNanos[i].reset();
+        }
+    }
+
+    public long getPhaseNanos(Phase phase) {
+        return phaseNanos[phase.ordinal()].sum();
+    }
+
+    public long getMaxPhaseNanos(Phase phase) {
+        return maxPhaseNanos[phase.ordinal()].get();
+    }
+
+    @Override
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    @Override
+    public long getActiveSpaces() {
+        return activeSpaces.sum();
+    }
+
+    @Override
+    public long getFrontiers() {
+        return frontiers.sum();
+    }
+
+    @Override
+    public long getConstructsExpanded() {
+        return constructsExpanded.sum();
+    }
+
+    @Override
+    public long getPrunedByMineCount() {
+        return prunedByMineCount.sum();
+    }
+
+    @Override
+    public long getPrunedByIllegalPlacement() {
+        return prunedByIllegalPlacement.sum();
+    }
+
+    @Override
+    public long getPossibilities() {
+        return possibilities.sum();
+    }
+
+    @Override
+    public long getPeakFrontierSize() {
+        return peakFrontierSize.get();
+    }
+
+    @Override
+    public long getImportNanos() {
+        return getPhaseNanos(Phase.IMPORT);
+    }
+
+    @Override
+    public long getActiveSpaceNanos() {
+        return getPhaseNanos(Phase.ACTIVE_SPACES);
+    }
+
+    @Override
+    public long getEnumerationNanos() {
+        return getPhaseNanos(Phase.ENUMERATION);
+    }
+
+    @Override
+    public long getAggregationNanos() {
+        return getPhaseNanos(Phase.AGGREGATION);
+    }
+
+    @Override
+    public long getMaxImportNanos() {
+        return getMaxPhaseNanos(Phase.IMPORT);
+    }
+
+    @Override
+    public long getMaxActiveSpaceNanos() {
+        return getMaxPhaseNanos(Phase.ACTIVE_SPACES);
+    }
+
+    @Override
+    public long getMaxEnumerationNanos() {
+        return getMaxPhaseNanos(Phase.ENUMERATION);
+    }
+
+    @Override
+    public long getMaxAggregationNanos() {
+        return getMaxPhaseNanos(Phase.AGGREGATION);
+    }
+
+    //endregion
+
+    // The statistics at one point in time
+    public static class Snapshot {
+        public final long calls, activeSpaces, frontiers, constructsExpanded;
+        public final long prunedByMineCount, prunedByIllegalPlacement, possibilities, peakFrontierSize;
+        public final long[] phaseNanos = new long[Phase.values().length]; // Indexed by Phase.ordinal()
+        public final long[] maxPhaseNanos = new long[Phase.values().length];
+
+        private Snapshot(SolverStatistics statistics) {
+            calls = statistics.getCalls();
+            activeSpaces = statistics.getActiveSpaces();
+            frontiers = statistics.getFrontiers();
+            constructsExpanded = statistics.getConstructsExpanded();
+            prunedByMineCount = statistics.getPrunedByMineCount();
+            prunedByIllegalPlacement = statistics.getPrunedByIllegalPlacement();
+            possibilities = statistics.getPossibilities();
+            peakFrontierSize = statistics.getPeakFrontierSize();
+            for (Phase phase : Phase.values()) {
+                phaseNanos[phase.ordinal()] = statistics.getPhaseNanos(phase);
+                maxPhaseNanos[phase.ordinal()] = statistics.getMaxPhaseNanos(phase);
+            }
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder ret = new StringBuilder();
+            ret.append(calls).append(" calls, ").append(activeSpaces).append(" active spaces in ").append(frontiers)
+                    .append(" frontiers (largest ").append(peakFrontierSize).append(" tiles)\n");
+            ret.append(constructsExpanded).append(" constructs expanded, ").append(prunedByMineCount).append(" pruned by mine count, ")
+                    .append(prunedByIllegalPlacement).append(" by illegal placement, ").append(possibilities).append(" possibilities\n");
+            for (Phase phase : Phase.values()) {
+                ret.append(String.format("%-13s %10.3f ms total, %8.3f ms max%n", phase.name().toLowerCase(),
+                        phaseNanos[phase.ordinal()] / 1e6, maxPhaseNanos[phase.ordinal()] / 1e6));
+            }
+            return ret.toString();
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package AI;
+
+// What SolverStatistics shows over JMX (look for Minesweeper:type=SolverStatistics in JConsole or VisualVM).
+// Times are in nanoseconds and everything counts up from the last reset().
+public interface SolverStatisticsMBean {
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    long getCalls();
+
+    long getActiveSpaces();
+
+    long getFrontiers();
+
+    long getConstructsExpanded();
+
+    long getPrunedByMineCount();
+
+    long getPrunedByIllegalPlacement();
+
+    long getPossibilities();
+
+    long getPeakFrontierSize();
+
+    long getImportNanos();
+
+    long getActiveSpaceNanos();
+
+    long getEnumerationNanos();
+
+    long getAggregationNanos();
+
+    long getMaxImportNanos();
+
+    long getMaxActiveSpaceNanos();
+
+    long getMaxEnumerationNanos();
+
+    long getMaxAggregationNanos();
+
+    void reset();
+}
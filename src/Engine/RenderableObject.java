@@ -1,5 +1,7 @@
 package Engine;
 
+import java.awt.*;
+
 public abstract class RenderableObject {
     public TRect rect = new TRect();
     protected TCanvas targetCanvas;
@@ -12,9 +14,15 @@ public abstract class RenderableObject {
     }
 
     public void flagTargetCanvas() {
-        targetCanvas.flagForRendering();
+        if (targetCanvas != null) targetCanvas.flagForRendering(); // Objects that aren't on a canvas, like replayed boards, don't render
     }
 
     public abstract void render();
 
+    // Redraws the part of the object inside region, for canvases that only repaint what changed.
+    // The canvas graphics are already clipped to the region, so by default the whole object is just drawn again.
+    public void renderRegion(Rectangle region) {
+        render();
+    }
+
 }
@@ -23,6 +23,12 @@ public class TCanvas extends JPanel
 
     ArrayList<RenderableObject> toRender = new ArrayList<>();
     boolean renderFlag = true;
+
+    // Regions that need repainting on the next frame, and the ones painted on the last frame.
+    // lastPaintedRegions is null when the whole texture was painted.
+    static final int MAX_DIRTY_REGIONS = 16;
+    ArrayList<Rectangle> dirtyRegions = new ArrayList<>();
+    ArrayList<Rectangle> lastPaintedRegions = null;
     ArrayList<TButton> buttons = new ArrayList<>();
 
     public TCanvas(int width, int height, Object interpolationSetting) {
@@ -57,7 +63,22 @@ public class TCanvas extends JPanel
         renderFlag = true;
     }
 
-    public void render() {
+    // Tells the canvas to redraw only the given region on the next frame. Overlapping regions are merged,
+    // and if too many pile up the whole canvas gets redrawn instead.
+    public void flagRegionForRendering(int x, int y, int width, int height) {
+        if (renderFlag) return;
+        Rectangle region = new Rectangle(x, y, width, height).intersection(new Rectangle(0, 0, mainTexture.getWidth(), mainTexture.getHeight()));
+        if (region.isEmpty()) return;
+
+        for (int i = dirtyRegions.size() - 1; i >= 0; i--) {
+            if (dirtyRegions.get(i).intersects(region)) region.add(dirtyRegions.remove(i));
+        }
+        dirtyRegions.add(region);
+        if (dirtyRegions.size() > MAX_DIRTY_REGIONS) renderFlag = true;
+    }
+
+    // Returns true if anything was drawn
+    public boolean render() {
         if (renderFlag) {
             getTextureGraphics().setColor(clearColor);
             getTextureGraphics().fillRect(0, 0, mainTexture.getWidth(), mainTexture.getHeight());
@@ -67,7 +88,40 @@ public class TCanvas extends JPanel
             mainTexture.applyChanges();
             generateScaledInstance();
             renderFlag = false;
+            dirtyRegions.clear();
+            lastPaintedRegions = null;
+            return true;
+        }
+
+        if (!dirtyRegions.isEmpty()) {
+            renderDirtyRegions();
+            return true;
+        }
+        return false;
+    }
+
+    private void renderDirtyRegions() {
+        // The edit buffer is one frame behind, so first catch it up with whatever changed on the last frame
+        if (lastPaintedRegions == null) mainTexture.syncEditBuffer(0, 0, mainTexture.getWidth(), mainTexture.getHeight());
+        else for (Rectangle region : lastPaintedRegions) mainTexture.syncEditBuffer(region.x, region.y, region.width, region.height);
+
+        Graphics2D g = getTextureGraphics();
+        for (Rectangle region : dirtyRegions) {
+            g.setClip(region);
+            g.setColor(clearColor);
+            g.fillRect(region.x, region.y, region.width, region.height);
+            for (RenderableObject obj : toRender) {
+                if (!obj.rect.isGlobalActive()) continue;
+                int[] bounds = obj.rect.getGlobalBounds();
+                if (region.intersects(bounds[0], bounds[1], bounds[2] - bounds[0], bounds[3] - bounds[1])) obj.renderRegion(region);
+            }
         }
+        g.setClip(null);
+        mainTexture.applyChanges();
+
+        for (Rectangle region : dirtyRegions) updateScaledRegion(region);
+        lastPaintedRegions = dirtyRegions;
+        dirtyRegions = new ArrayList<>();
     }
 
     //region Getters and Setters
@@ -139,6 +193,32 @@ public class TCanvas extends JPanel
         }
     }
 
+    // Rescales only part of the texture into the scaled instance
+    protected void updateScaledRegion (Rectangle region) {
+        float scaleFactor = getScaleFactorToFill(getSize());
+        int targetWidth = Math.round(mainTexture.getWidth() * scaleFactor);
+        int targetHeight = Math.round(mainTexture.getHeight() * scaleFactor);
+        if (scaleFactor == 1f || scaleFactor <= 0f || scaled == null
+                || scaled.getWidth() != targetWidth || scaled.getHeight() != targetHeight) {
+            generateScaledInstance(); // Either it's just the texture itself, or it's out of date anyway
+            return;
+        }
+
+        // Grab a pixel of margin so the interpolation at the edges has something to blend with
+        int x1 = Math.max(region.x - 1, 0);
+        int y1 = Math.max(region.y - 1, 0);
+        int x2 = Math.min(region.x + region.width + 1, mainTexture.getWidth());
+        int y2 = Math.min(region.y + region.height + 1, mainTexture.getHeight());
+
+        Graphics2D g2 = scaled.createGraphics();
+        g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, interpolationSetting);
+        g2.drawImage(mainTexture.getCurrent(),
+                (int) Math.floor(x1 * scaleFactor), (int) Math.floor(y1 * scaleFactor),
+                (int) Math.ceil(x2 * scaleFactor), (int) Math.ceil(y2 * scaleFactor),
+                x1, y1, x2, y2, null);
+        g2.dispose();
+    }
+
     public BufferedImage getScaledInstanceToFill (Dimension size){
         float scaleFactor = getScaleFactorToFill(size);
         return getScaledInstance(scaleFactor);
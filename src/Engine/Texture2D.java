@@ -40,6 +40,16 @@ public class Texture2D {
         return height;
     }
 
+    // Copies a region of the displayed buffer into the edit buffer, so that it can be drawn over
+    // without redrawing everything around it.
+    public void syncEditBuffer(int x, int y, int width, int height) {
+        Graphics2D g = getGraphics();
+        Shape clip = g.getClip();
+        g.setClip(null);
+        g.drawImage(getCurrent(), x, y, x + width, y + height, x, y, x + width, y + height, null);
+        g.setClip(clip);
+    }
+
     // Switches which buffer is being edited and which is displayed.
     public void applyChanges() {
         currentEditBuffer = !currentEditBuffer;
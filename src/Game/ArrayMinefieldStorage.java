@@ -0,0 +1,85 @@
+package Game;
+
+import java.util.Arrays;
+
+// The original storage layout: one 2D array per kind of cell data. Fast, but costs 9+ bytes per cell.
+public class ArrayMinefieldStorage implements MinefieldStorage {
+    private int width, height;
+    private boolean[][] mineGrid; // Keeps track of location of mines
+    private int[][] markerGrid; // Keeps track of how many mines are around each cell
+    private MinefieldState.CellFogType[][] fogGrid;
+    private long visibleCount, flagCount; // Kept up to date by setFog(), so the game doesn't have to count every turn
+
+    public ArrayMinefieldStorage(int width, int height) {
+        this.width = width;
+        this.height = height;
+        mineGrid = new boolean[height][width];
+        fogGrid = new MinefieldState.CellFogType[height][width];
+        for (int y = 0; y < height; y++) {
+            Arrays.fill(fogGrid[y], MinefieldState.CellFogType.HIDDEN);
+        }
+        markerGrid = new int[height][width];
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public boolean isMine(int x, int y) {
+        return mineGrid[y][x];
+    }
+
+    @Override
+    public void setMine(int x, int y, boolean mine) {
+        mineGrid[y][x] = mine;
+    }
+
+    @Override
+    public int getMarker(int x, int y) {
+        return markerGrid[y][x];
+    }
+
+    @Override
+    public void setMarker(int x, int y, int marker) {
+        markerGrid[y][x] = marker;
+    }
+
+    @Override
+    public MinefieldState.CellFogType getFog(int x, int y) {
+        return fogGrid[y][x];
+    }
+
+    @Override
+    public void setFog(int x, int y, MinefieldState.CellFogType fog) {
+        if (fogGrid[y][x] == MinefieldState.CellFogType.VISIBLE) visibleCount--;
+        else if (fogGrid[y][x] == MinefieldState.CellFogType.FLAGGED) flagCount--;
+        fogGrid[y][x] = fog;
+        if (fog == MinefieldState.CellFogType.VISIBLE) visibleCount++;
+        else if (fog == MinefieldState.CellFogType.FLAGGED) flagCount++;
+    }
+
+    @Override
+    public long countVisible() {
+        return visibleCount;
+    }
+
+    @Override
+    public long countFlags() {
+        return flagCount;
+    }
+
+    @Override
+    public long nextHiddenCell(long fromIndex) {
+        for (long i = Math.max(fromIndex, 0); i < (long) width * height; i++) {
+            if (fogGrid[(int) (i / width)][(int) (i % width)] == MinefieldState.CellFogType.HIDDEN) return i;
+        }
+        return -1;
+    }
+}
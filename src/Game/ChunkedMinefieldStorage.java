@@ -0,0 +1,311 @@
+package Game;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+// Storage for huge (effectively infinite) boards. The field is split into CHUNK_SIZE x CHUNK_SIZE chunks
+// which are only created, and mined deterministically from the seed, the first time one of their cells is read.
+// Untouched chunks cost nothing, so memory scales with the explored area rather than the board size.
+//
+// Markers are counted from the mine bits when asked for, so mines can't be spread by MinefieldState.spreadMines();
+// each chunk places its own with the given density. A marker set by hand sticks, though: the chunk keeps it as an
+// override, and only allocates room for those once the first one is set.
+//
+// Only maxLoadedChunks chunks are kept in memory. When a cold chunk is evicted its mines are thrown away
+// (they can be generated again from the seed) and only the fog and marker overrides of chunks that have any are kept.
+public class ChunkedMinefieldStorage implements MinefieldStorage {
+    public static final int CHUNK_SHIFT = 6;
+    public static final int CHUNK_SIZE = 1 << CHUNK_SHIFT; // One long per chunk row
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private final int width, height;
+    private final long seed;
+    private final double density;
+    private final int maxLoadedChunks;
+
+    private final LinkedHashMap<Long, Chunk> loadedChunks;
+    private final HashMap<Long, ColdChunk> coldChunks = new HashMap<>(); // Evicted chunks that differ from a freshly generated one
+
+    private long visibleCount, flagCount;
+
+    public ChunkedMinefieldStorage(long seed, double density) {
+        this(Integer.MAX_VALUE, Integer.MAX_VALUE, seed, density, 4096);
+    }
+
+    public ChunkedMinefieldStorage(int width, int height, long seed, double density, int maxLoadedChunks) {
+        if (width <= 0 || height <= 0) throw new IllegalArgumentException("Invalid board size " + width + "x" + height);
+        if (density < 0 || density > 1) throw new IllegalArgumentException("Mine density must be between 0 and 1");
+        if (maxLoadedChunks < 9) throw new IllegalArgumentException("At least 9 chunks must fit in memory");
+        this.width = width;
+        this.height = height;
+        this.seed = seed;
+        this.density = density;
+        this.maxLoadedChunks = maxLoadedChunks;
+        loadedChunks = new LinkedHashMap<>(16, 0.75f, true) { // access order, so the eldest entry is the coldest chunk
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Chunk> eldest) {
+                if (size() <= ChunkedMinefieldStorage.this.maxLoadedChunks) return false;
+                evict(eldest.getKey(), eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public double getDensity() {
+        return density;
+    }
+
+    // The number of mines the board is expected to hold. Use this as the MinefieldState's total mine count.
+    public int getExpectedMineCount() {
+        return (int) Math.min(Integer.MAX_VALUE, Math.round((double) width * height * density));
+    }
+
+    public int getLoadedChunkCount() {
+        return loadedChunks.size();
+    }
+
+    public int getColdChunkCount() {
+        return coldChunks.size();
+    }
+
+    //region Chunks
+
+    private static final byte NO_MARKER = -1; // Marker overrides that aren't set, so the marker gets counted
+
+    private static class Chunk {
+        final long[] mineRows = new long[CHUNK_SIZE];
+        final long[] visibleRows = new long[CHUNK_SIZE];
+        final long[] flagRows = new long[CHUNK_SIZE];
+        byte[] markers; // Markers set by hand, indexed by row * CHUNK_SIZE + column. null until the first one.
+        boolean minesEdited, fogTouched;
+    }
+
+    private static class ColdChunk {
+        long[] mineRows; // null unless the mines were edited by hand
+        long[] visibleRows, flagRows;
+        byte[] markers; // null unless a marker was set by hand
+    }
+
+    private static long chunkKey(int chunkX, int chunkY) {
+        return ((long) chunkY << 32) | (chunkX & 0xFFFFFFFFL);
+    }
+
+    private Chunk getChunk(int x, int y) {
+        int chunkX = x >>> CHUNK_SHIFT;
+        int chunkY = y >>> CHUNK_SHIFT;
+        long key = chunkKey(chunkX, chunkY);
+        Chunk chunk = loadedChunks.get(key);
+        if (chunk == null) {
+            chunk = loadChunk(key, chunkX, chunkY);
+            loadedChunks.put(key, chunk);
+        }
+        return chunk;
+    }
+
+    // Returns the loaded chunk without creating it, or null
+    private Chunk peekChunk(int x, int y) {
+        return loadedChunks.get(chunkKey(x >>> CHUNK_SHIFT, y >>> CHUNK_SHIFT));
+    }
+
+    private Chunk loadChunk(long key, int chunkX, int chunkY) {
+        Chunk chunk = new Chunk();
+        ColdChunk cold = coldChunks.remove(key);
+        if (cold != null && cold.mineRows != null) {
+            System.arraycopy(cold.mineRows, 0, chunk.mineRows, 0, CHUNK_SIZE);
+            chunk.minesEdited = true;
+        } else {
+            generateMines(chunk.mineRows, chunkX, chunkY);
+        }
+        if (cold != null && cold.visibleRows != null) {
+            System.arraycopy(cold.visibleRows, 0, chunk.visibleRows, 0, CHUNK_SIZE);
+            System.arraycopy(cold.flagRows, 0, chunk.flagRows, 0, CHUNK_SIZE);
+            chunk.fogTouched = true;
+        }
+        if (cold != null) chunk.markers = cold.markers;
+        return chunk;
+    }
+
+    private void generateMines(long[] mineRows, int chunkX, int chunkY) {
+        // Every chunk gets its own random stream so it comes out the same no matter when it's first touched
+        SplittableRandom rand = new SplittableRandom(seed ^ (chunkX * 0x9E3779B97F4A7C15L) ^ (chunkY * 0xC2B2AE3D27D4EB4FL));
+        int columns = (int) Math.min(CHUNK_SIZE, (long) width - ((long) chunkX << CHUNK_SHIFT));
+        int rows = (int) Math.min(CHUNK_SIZE, (long) height - ((long) chunkY << CHUNK_SHIFT));
+        for (int row = 0; row < rows; row++) {
+            long bits = 0;
+            for (int column = 0; column < columns; column++) {
+                if (rand.nextDouble() < density) bits |= 1L << column;
+            }
+            mineRows[row] = bits;
+        }
+    }
+
+    private void evict(long key, Chunk chunk) {
+        if (!chunk.minesEdited && !chunk.fogTouched && chunk.markers == null) return; // Identical to a fresh chunk, nothing to keep
+        ColdChunk cold = new ColdChunk();
+        if (chunk.minesEdited) cold.mineRows = chunk.mineRows;
+        cold.markers = chunk.markers;
+        if (chunk.fogTouched) {
+            cold.visibleRows = chunk.visibleRows;
+            cold.flagRows = chunk.flagRows;
+        }
+        coldChunks.put(key, cold);
+    }
+
+    //endregion
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public boolean generatesOwnMines() {
+        return true;
+    }
+
+    @Override
+    public boolean isMine(int x, int y) {
+        return (getChunk(x, y).mineRows[y & CHUNK_MASK] & (1L << x)) != 0;
+    }
+
+    @Override
+    public void setMine(int x, int y, boolean mine) {
+        Chunk chunk = getChunk(x, y);
+        if (mine) chunk.mineRows[y & CHUNK_MASK] |= 1L << x;
+        else chunk.mineRows[y & CHUNK_MASK] &= ~(1L << x);
+        chunk.minesEdited = true;
+    }
+
+    @Override
+    public int getMarker(int x, int y) {
+        Chunk chunk = getChunk(x, y);
+        if (chunk.markers != null && chunk.markers[markerIndex(x, y)] != NO_MARKER) return chunk.markers[markerIndex(x, y)];
+
+        int marker = 0;
+        for (int deltaY = -1; deltaY <= 1; deltaY++) {
+            for (int deltaX = -1; deltaX <= 1; deltaX++) {
+                if (deltaX == 0 && deltaY == 0) continue;
+                long neighborX = (long) x + deltaX;
+                long neighborY = (long) y + deltaY;
+                if (neighborX < 0 || neighborX >= width || neighborY < 0 || neighborY >= height) continue;
+                if (isMine((int) neighborX, (int) neighborY)) marker++;
+            }
+        }
+        return marker;
+    }
+
+    // Overrides the counted marker of the cell from now on, like the other storages that keep their markers
+    @Override
+    public void setMarker(int x, int y, int marker) {
+        if (marker < 0 || marker > 8) throw new IllegalArgumentException("Markers go from 0 to 8, not " + marker);
+        Chunk chunk = getChunk(x, y);
+        if (chunk.markers == null) {
+            chunk.markers = new byte[CHUNK_SIZE * CHUNK_SIZE];
+            Arrays.fill(chunk.markers, NO_MARKER);
+        }
+        chunk.markers[markerIndex(x, y)] = (byte) marker;
+    }
+
+    private static int markerIndex(int x, int y) {
+        return (y & CHUNK_MASK) << CHUNK_SHIFT | (x & CHUNK_MASK);
+    }
+
+    @Override
+    public MinefieldState.CellFogType getFog(int x, int y) {
+        long bit = 1L << x;
+        int row = y & CHUNK_MASK;
+        Chunk chunk = peekChunk(x, y);
+        long visibleRow, flagRow;
+        if (chunk != null) {
+            visibleRow = chunk.visibleRows[row];
+            flagRow = chunk.flagRows[row];
+        } else { // Reading fog shouldn't load a chunk
+            ColdChunk cold = coldChunks.get(chunkKey(x >>> CHUNK_SHIFT, y >>> CHUNK_SHIFT));
+            if (cold == null || cold.visibleRows == null) return MinefieldState.CellFogType.HIDDEN;
+            visibleRow = cold.visibleRows[row];
+            flagRow = cold.flagRows[row];
+        }
+        if ((flagRow & bit) != 0) return MinefieldState.CellFogType.FLAGGED;
+        if ((visibleRow & bit) != 0) return MinefieldState.CellFogType.VISIBLE;
+        return MinefieldState.CellFogType.HIDDEN;
+    }
+
+    @Override
+    public void setFog(int x, int y, MinefieldState.CellFogType fog) {
+        Chunk chunk = getChunk(x, y);
+        int row = y & CHUNK_MASK;
+        long bit = 1L << x;
+        if ((chunk.visibleRows[row] & bit) != 0) visibleCount--;
+        if ((chunk.flagRows[row] & bit) != 0) flagCount--;
+        chunk.visibleRows[row] &= ~bit;
+        chunk.flagRows[row] &= ~bit;
+        if (fog == MinefieldState.CellFogType.VISIBLE) {
+            chunk.visibleRows[row] |= bit;
+            visibleCount++;
+        } else if (fog == MinefieldState.CellFogType.FLAGGED) {
+            chunk.flagRows[row] |= bit;
+            flagCount++;
+        }
+        chunk.fogTouched = true;
+    }
+
+    //region Bulk Operations
+
+    @Override
+    public long countVisible() {
+        return visibleCount;
+    }
+
+    @Override
+    public long countFlags() {
+        return flagCount;
+    }
+
+    @Override
+    public long nextHiddenCell(long fromIndex) {
+        if (fromIndex < 0) fromIndex = 0;
+        long y = fromIndex / width;
+        long x = fromIndex % width;
+        while (y < height) {
+            int row = (int) (y & CHUNK_MASK);
+            long columnsLeft = width - (x & ~CHUNK_MASK); // Don't look past the right edge of the board
+            long valid = columnsLeft >= CHUNK_SIZE ? -1L : (1L << columnsLeft) - 1;
+            long visibleRow = 0, flagRow = 0;
+            Chunk chunk = peekChunk((int) x, (int) y);
+            if (chunk != null) {
+                visibleRow = chunk.visibleRows[row];
+                flagRow = chunk.flagRows[row];
+            } else {
+                ColdChunk cold = coldChunks.get(chunkKey((int) (x >>> CHUNK_SHIFT), (int) (y >>> CHUNK_SHIFT)));
+                if (cold != null && cold.visibleRows != null) {
+                    visibleRow = cold.visibleRows[row];
+                    flagRow = cold.flagRows[row];
+                }
+            }
+
+            long hidden = ~(visibleRow | flagRow) & valid & (-1L << x);
+            if (hidden != 0) return y * width + (x & ~CHUNK_MASK) + Long.numberOfTrailingZeros(hidden);
+
+            x = (x & ~CHUNK_MASK) + CHUNK_SIZE; // Move on to the same row of the next chunk
+            if (x >= width) {
+                x = 0;
+                y++;
+            }
+        }
+        return -1;
+    }
+
+    //endregion
+}
@@ -0,0 +1,112 @@
+package Game;
+
+// Reveals connected regions of a board in one linear pass.
+// Cells are queued as primitive indices (y * width + x) in a growable ring buffer, and every cell is revealed
+// the moment it's queued. That way the board's own visibility works as the visited set, and no cell is
+// ever queued or checked twice, no matter how big the opening is.
+public class FloodFill {
+    private final MinefieldStorage storage;
+    private final long width, height;
+
+    private long[] queue = new long[256];
+    private int head, size;
+    private int revealed;
+    private int minX, minY, maxX, maxY; // Bounding box of the cells revealed by the last run
+    private MoveHistory history; // Gets told about every revealed cell if set
+
+    public FloodFill(MinefieldStorage storage) {
+        this.storage = storage;
+        this.width = storage.getWidth();
+        this.height = storage.getHeight();
+    }
+
+    public void setHistory(MoveHistory history) {
+        this.history = history;
+    }
+
+    // Queues a starting cell. Starting cells are always revealed, even if they're flagged.
+    public void add(int x, int y) {
+        MinefieldState.CellFogType fog = storage.getFog(x, y);
+        if (fog != MinefieldState.CellFogType.VISIBLE) reveal(x, y, fog);
+        enqueue(y * width + x);
+    }
+
+    // Spreads out from every queued cell, opening up the neighbors of empty cells.
+    // Returns how many cells were revealed since the last run, including the starting cells.
+    public int run() {
+        while (size > 0) {
+            long current = queue[head];
+            head = (head + 1) & (queue.length - 1);
+            size--;
+
+            int x = (int) (current % width);
+            int y = (int) (current / width);
+            if (storage.getMarker(x, y) != 0 || storage.isMine(x, y)) continue; // Only auto clear cells next to 0 markers
+
+            for (int j = -1; j <= 1; j++) {
+                int gridY = y + j;
+                if (gridY < 0 || gridY >= height) continue;
+                for (int i = -1; i <= 1; i++) {
+                    if (i == 0 && j == 0) continue;
+                    int gridX = x + i;
+                    if (gridX < 0 || gridX >= width) continue;
+
+                    if (storage.getFog(gridX, gridY) == MinefieldState.CellFogType.HIDDEN) {
+                        reveal(gridX, gridY, MinefieldState.CellFogType.HIDDEN);
+                        enqueue(gridY * width + gridX);
+                    }
+                }
+            }
+        }
+
+        int ret = revealed;
+        revealed = 0;
+        return ret;
+    }
+
+    // The bounds of the cells revealed by the last run. Only meaningful if it revealed anything.
+    public int getRevealedMinX() {
+        return minX;
+    }
+
+    public int getRevealedMinY() {
+        return minY;
+    }
+
+    public int getRevealedMaxX() {
+        return maxX;
+    }
+
+    public int getRevealedMaxY() {
+        return maxY;
+    }
+
+    private void reveal(int x, int y, MinefieldState.CellFogType oldFog) {
+        storage.setFog(x, y, MinefieldState.CellFogType.VISIBLE);
+        if (history != null) history.recordChange(y * width + x, oldFog, MinefieldState.CellFogType.VISIBLE);
+        if (revealed++ == 0) {
+            minX = maxX = x;
+            minY = maxY = y;
+        } else {
+            minX = Math.min(minX, x);
+            maxX = Math.max(maxX, x);
+            minY = Math.min(minY, y);
+            maxY = Math.max(maxY, y);
+        }
+    }
+
+    private void enqueue(long cell) {
+        if (size == queue.length) grow();
+        queue[(head + size) & (queue.length - 1)] = cell;
+        size++;
+    }
+
+    private void grow() {
+        long[] bigger = new long[queue.length * 2]; // Stays a power of 2 so wrapping around is just a mask
+        for (int i = 0; i < size; i++) {
+            bigger[i] = queue[(head + i) & (queue.length - 1)];
+        }
+        queue = bigger;
+        head = 0;
+    }
+}
@@ -1,14 +1,11 @@
 package Game;
 
-import AI.CaseworkAI;
+import AI.AutoPlayer;
 import Engine.*;
-import Utils.Vector2Int;
 
 import javax.swing.*;
 import java.awt.*;
-import java.awt.event.MouseEvent;
-import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 public class Game {
 
@@ -17,11 +14,15 @@ public class Game {
 
     Minefield minefield;
 
+    private static final long AUTOPLAY_STEP_DELAY = 150; // ms, slow enough to follow along
+    private final AutoPlayer autoPlayer = new AutoPlayer();
+
     public static TCanvas getCanvas() {
         return canvas;
     }
 
-    private static LinkedList<Runnable> preRenderEvents = new LinkedList<>();
+    // Filled from Swing's event thread (every TButton click, the minefield's included) and emptied by the game loop
+    private static final ConcurrentLinkedQueue<Runnable> preRenderEvents = new ConcurrentLinkedQueue<>();
 
     public static void queuePreRenderEvent(Runnable event) {
         preRenderEvents.add(event);
@@ -73,13 +74,19 @@ public class Game {
             //endregion
 
             System.out.println("Performing PreRender Events..");
-            while (!preRenderEvents.isEmpty()) {
-                preRenderEvents.remove().run();
+            Runnable event;
+            while ((event = preRenderEvents.poll()) != null) {
+                event.run();
+            }
+
+            if (autoPlayer.isPlaying()) {
+                AutoPlayer.GameResult result = autoPlayer.tick();
+                if (result != null) System.out.println("AI " + (result.won ? "won" : "lost") + " after "
+                        + result.moves + " moves and " + result.guesses + " guesses");
             }
 
             System.out.println("Rendering...");
-            canvas.render();
-            mainFrame.repaint();
+            if (canvas.render()) mainFrame.repaint();
 
             System.out.println();
         }
@@ -88,7 +95,6 @@ public class Game {
     private void initGameObjects() {
         //region Minefield
         minefield = (Minefield) canvas.addRenderable(new Minefield(16, 30, 99));
-        minefield.spreadMines();
         minefield.rect.parent = canvas.rect;
         minefield.rect.setSize(128, 250);
         minefield.rect.setLocalAnchorPos(0.5f, 0.5f);
@@ -106,7 +112,7 @@ public class Game {
         minefieldButton.rect.setOffset(0, 0);
         //endregion
 
-        //region AI Test Button
+        //region AI Button
         BoxIcon aiBox = (BoxIcon) canvas.addRenderable(new BoxIcon(Color.GRAY, Color.BLACK, 2));
         aiBox.rect.parent = canvas.rect;
         aiBox.rect.setSize(50, 50);
@@ -115,15 +121,11 @@ public class Game {
         aiBox.rect.setOffset(0, 0);
         aiBox.rect.setZOffset(1);
 
-        CaseworkAI ai = new CaseworkAI();
+        autoPlayer.setStepDelayMillis(AUTOPLAY_STEP_DELAY);
         TButton aiBoxButton = canvas.addButton(new TButton());
-        aiBoxButton.addOnClickEvent((e) -> {
-            ai.importGrid(minefield);
-            HashMap<Vector2Int, Float> probabilities = ai.determineProbabilities(); // Run the AI
-            for (Vector2Int tile : probabilities.keySet()) {
-                if (probabilities.get(tile) == 1) minefield.interactAtCellPos(tile, MouseEvent.BUTTON3); // Simulate Right Click if it's a guaranteed flag tile
-                else if (probabilities.get(tile) == 0) minefield.interactAtCellPos(tile, MouseEvent.BUTTON1); // Simulate left click if it's a guaranteed empty tile
-            }
+        aiBoxButton.addOnClickEvent((e) -> { // Start or stop playing. TButton already runs this on the game loop's thread.
+            if (autoPlayer.isPlaying()) autoPlayer.stop();
+            else if (!minefield.getState().isFinished()) autoPlayer.start(minefield.getState());
         });
         aiBoxButton.rect.parent = aiBox.rect;
         aiBoxButton.rect.setSize(150, 50);
@@ -1,7 +1,15 @@
 package Game;
 
+import AI.AutoPlayer;
+import AI.BatchRunner;
+import AI.SolverStatistics;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
 public class Main {
     public static void main(String[] args){
+        if (SolverStatistics.get().isEnabled()) SolverStatistics.registerMBean(); // Lets JConsole & co. look inside the AI, see SolverStatistics
         /*
         Window mainWindow = new Window("Hey there, handsome ;D", 512, 512);
 
@@ -10,6 +18,70 @@ public class Main {
         mainWindow.setVisible(true);
          */
 
+        if (args.length > 0 && args[0].equals("--headless")) {
+            runHeadless(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--batch")) {
+            runBatch(args);
+            return;
+        }
+
         Game game = new Game();
     }
-}
\ No newline at end of file
+
+    // Lets the AI play whole games with no display at all, guessing when it has to.
+    // Usage: --headless [games] [width] [height] [mines] [seed]
+    private static void runHeadless(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        int games = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+        int width = args.length > 2 ? Integer.parseInt(args[2]) : 9;
+        int height = args.length > 3 ? Integer.parseInt(args[3]) : 9;
+        int mines = args.length > 4 ? Integer.parseInt(args[4]) : 10;
+        long seed = args.length > 5 ? Long.parseLong(args[5]) : System.nanoTime();
+
+        AutoPlayer player = new AutoPlayer();
+        for (int i = 0; i < games; i++) {
+            MinefieldState state = new MinefieldState(width, height, mines);
+            state.setSeed(seed + i);
+            state.setUndoEnabled(false); // Nobody is going to take these moves back
+            player.start(state);
+            while (player.isPlaying()) player.step();
+        }
+        System.out.println("Played " + player);
+        if (SolverStatistics.get().isEnabled()) System.out.print(SolverStatistics.get().snapshot());
+    }
+
+    // Plays a big batch of games on every core and writes a JSON report.
+    // Usage: --batch [games] [beginner|intermediate|expert|WxHxM] [threads] [seed] [report file]
+    private static void runBatch(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        long games = args.length > 1 ? Long.parseLong(args[1]) : 10000;
+        String size = args.length > 2 ? args[2] : "beginner";
+        int[] board = switch (size) {
+            case "beginner" -> new int[]{9, 9, 10};
+            case "intermediate" -> new int[]{16, 16, 40};
+            case "expert" -> new int[]{30, 16, 99};
+            default -> {
+                String[] parts = size.split("x");
+                if (parts.length != 3) throw new IllegalArgumentException("Board size should look like 30x16x99, not " + size);
+                yield new int[]{Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), Integer.parseInt(parts[2])};
+            }
+        };
+
+        BatchRunner runner = new BatchRunner(board[0], board[1], board[2]);
+        if (args.length > 3) runner.setThreads(Integer.parseInt(args[3]));
+        runner.setSeed(args.length > 4 ? Long.parseLong(args[4]) : System.nanoTime());
+        runner.setProgressOutput(System.out, 10_000);
+        try {
+            BatchRunner.Report report = runner.run(games);
+            System.out.println(report);
+            if (SolverStatistics.get().isEnabled()) System.out.print(SolverStatistics.get().snapshot());
+            if (args.length > 5) report.writeJson(Path.of(args[5]));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            System.err.println("Couldn't write the report: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package Game;
+
+import java.nio.LongBuffer;
+
+// Read-only storage that reads a snapshot straight out of a memory mapped file (see MinefieldSnapshot.mapReadOnly()).
+// Uses the same plane layout as PackedMinefieldStorage.
+public class MappedMinefieldStorage implements MinefieldStorage {
+    private final int width, height, cellCount;
+    private final LongBuffer mineBits, visibleBits, flagBits, markerNibbles;
+
+    MappedMinefieldStorage(int width, int height, LongBuffer mineBits, LongBuffer visibleBits, LongBuffer flagBits, LongBuffer markerNibbles) {
+        this.width = width;
+        this.height = height;
+        this.cellCount = width * height;
+        this.mineBits = mineBits;
+        this.visibleBits = visibleBits;
+        this.flagBits = flagBits;
+        this.markerNibbles = markerNibbles;
+    }
+
+    private int index(int x, int y) {
+        return y * width + x;
+    }
+
+    private static boolean getBit(LongBuffer bits, int i) {
+        return (bits.get(i >>> 6) & (1L << i)) != 0;
+    }
+
+    private static UnsupportedOperationException readOnly() {
+        return new UnsupportedOperationException("Minefield is mapped read-only from a snapshot");
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public boolean generatesOwnMines() {
+        return true; // The mines are already in the file
+    }
+
+    @Override
+    public boolean isMine(int x, int y) {
+        return getBit(mineBits, index(x, y));
+    }
+
+    @Override
+    public void setMine(int x, int y, boolean mine) {
+        throw readOnly();
+    }
+
+    @Override
+    public int getMarker(int x, int y) {
+        int i = index(x, y);
+        return (int) (markerNibbles.get(i >>> 4) >>> ((i & 15) << 2)) & 0xF;
+    }
+
+    @Override
+    public void setMarker(int x, int y, int marker) {
+        throw readOnly();
+    }
+
+    @Override
+    public MinefieldState.CellFogType getFog(int x, int y) {
+        int i = index(x, y);
+        if (getBit(flagBits, i)) return MinefieldState.CellFogType.FLAGGED;
+        if (getBit(visibleBits, i)) return MinefieldState.CellFogType.VISIBLE;
+        return MinefieldState.CellFogType.HIDDEN;
+    }
+
+    @Override
+    public void setFog(int x, int y, MinefieldState.CellFogType fog) {
+        throw readOnly();
+    }
+
+    //region Bulk Operations
+
+    private static long countBits(LongBuffer bits) {
+        long count = 0;
+        for (int w = 0; w < bits.limit(); w++) count += Long.bitCount(bits.get(w));
+        return count;
+    }
+
+    @Override
+    public long countVisible() {
+        return countBits(visibleBits);
+    }
+
+    @Override
+    public long countFlags() {
+        return countBits(flagBits);
+    }
+
+    @Override
+    public long nextHiddenCell(long fromIndex) {
+        if (fromIndex < 0) fromIndex = 0;
+        if (fromIndex >= cellCount) return -1;
+        int w = (int) (fromIndex >>> 6);
+        long hidden = ~(visibleBits.get(w) | flagBits.get(w)) & (-1L << fromIndex);
+        while (true) {
+            if (hidden != 0) {
+                long i = ((long) w << 6) + Long.numberOfTrailingZeros(hidden);
+                return i < cellCount ? i : -1;
+            }
+            if (++w >= visibleBits.limit()) return -1;
+            hidden = ~(visibleBits.get(w) | flagBits.get(w));
+        }
+    }
+
+    //endregion
+}
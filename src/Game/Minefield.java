@@ -4,28 +4,29 @@ import Engine.RenderableObject;
 import Utils.Vector2Int;
 import java.awt.*;
 import java.awt.event.MouseEvent;
-import java.util.*;
 
-public class Minefield extends RenderableObject {
-    private int width, height, totalMines;
-    private boolean[][] mineGrid; // Keeps track of location of mines
-    private int[][] markerGrid; // Keeps track of how many mines are around each cell
-    private CellFogType[][] fogGrid;
-
-    private Random rand = new Random();
+// Draws a MinefieldState on a TCanvas and passes clicks on to it
+public class Minefield extends RenderableObject implements MinefieldState.ChangeListener {
+    private final MinefieldState state;
+    private final int width, height;
 
     private int cellSize, minefieldCornerX, minefieldCornerY;
+    private Font mineFont;
+    private boolean layoutChanged = true;
 
     public Minefield(int width, int height, int totalMines) {
-        this.width = width;
-        this.height = height;
-        this.totalMines = totalMines;
-        mineGrid = new boolean[height][width];
-        fogGrid = new CellFogType[height][width];
-        for (int y = 0; y < height; y++) {
-            Arrays.fill(fogGrid[y], CellFogType.HIDDEN);
-        }
-        markerGrid = new int[height][width];
+        this(new MinefieldState(width, height, totalMines));
+    }
+
+    public Minefield(MinefieldState state) {
+        this.state = state;
+        this.width = state.getWidth();
+        this.height = state.getHeight();
+        state.addChangeListener(this);
+    }
+
+    public MinefieldState getState() {
+        return state;
     }
 
     public int getWidth() {
@@ -37,44 +38,43 @@ public class Minefield extends RenderableObject {
     }
 
     public int getTotalMines() {
-        return totalMines;
+        return state.getTotalMines();
     }
 
     public boolean checkForMineAt(int x, int y) {
-        return mineGrid[y][x];
+        return state.checkForMineAt(x, y);
     }
 
     public int getMarkerAt(int x, int y) {
-        return markerGrid[y][x];
+        return state.getMarkerAt(x, y);
     }
 
-    public CellFogType getCellFogAt(int x, int y) {
-        return fogGrid[y][x];
+    public MinefieldState.CellFogType getCellFogAt(int x, int y) {
+        return state.getCellFogAt(x, y);
     }
 
-    public void setCellFogAt(int x, int y, CellFogType fog) {
-        fogGrid[y][x] = fog;
-        flagTargetCanvas();
+    public void setCellFogAt(int x, int y, MinefieldState.CellFogType fog) {
+        state.setCellFogAt(x, y, fog);
     }
 
-    public void spreadMines() {
-        for (int i = 0; i < totalMines; i++) {
-            int randomY, randomX;
-            do {
-                randomY = rand.nextInt(height);
-                randomX = rand.nextInt(width);
-            } while (mineGrid[randomY][randomX]); // Find a cell without a mine
-            mineGrid[randomY][randomX] = true;
+    public void interactAtCellPos(Vector2Int cellPos, int buttonType) { // helper function so that AI can interact with board
+        state.interactAtCellPos(cellPos, buttonType);
+    }
 
-            for (int deltaX = -1; deltaX <= 1; deltaX++) {
-                for (int deltaY = -1; deltaY <= 1; deltaY++) {
-                    if (deltaX == 0 && deltaY == 0) continue;
-                    if (randomX + deltaX < 0 || randomX + deltaX >= width) continue;
-                    if (randomY + deltaY < 0 || randomY + deltaY >= height) continue;
-                    markerGrid[randomY + deltaY][randomX + deltaX]++;
-                }
-            }
+    @Override
+    public void onCellsChanged(int minX, int minY, int maxX, int maxY) {
+        flagDirtyCells(minX, minY, maxX, maxY);
+    }
+
+    // Tells the canvas to redraw just the pixels covered by the given range of cells
+    public void flagDirtyCells(int minX, int minY, int maxX, int maxY) {
+        if (targetCanvas == null) return;
+        if (cellSize == 0 || layoutChanged) { // Nothing has been laid out yet, so the whole thing needs drawing anyway
+            flagTargetCanvas();
+            return;
         }
+        targetCanvas.flagRegionForRendering(minefieldCornerX + minX * cellSize, minefieldCornerY + minY * cellSize,
+                (maxX - minX + 1) * cellSize, (maxY - minY + 1) * cellSize);
     }
 
     public Vector2Int getCellAtMousePos(int x, int y) {
@@ -91,63 +91,10 @@ public class Minefield extends RenderableObject {
         Vector2Int cellPos = getCellAtMousePos(targetCanvas.windowSpaceToCanvasSpaceX(e.getX()), targetCanvas.windowSpaceToCanvasSpaceY(e.getY()));
         if (cellPos.x == -1 || cellPos.y == -1) return;
 
-        interactAtCellPos(cellPos, e.getButton());
-    }
-
-    public void interactAtCellPos(Vector2Int cellPos, int buttonType) { // helper function so that AI can interact with board
-        CellFogType fogType = getCellFogAt(cellPos.x, cellPos.y);
-        if (buttonType == MouseEvent.BUTTON1 && fogType == CellFogType.HIDDEN)
-            visionSpreadProtocol(cellPos);
-        if (buttonType == MouseEvent.BUTTON3) {
-            switch (getCellFogAt(cellPos.x, cellPos.y)) {
-                case FLAGGED -> setCellFogAt(cellPos.x, cellPos.y, CellFogType.HIDDEN);
-                case HIDDEN -> setCellFogAt(cellPos.x, cellPos.y, CellFogType.FLAGGED);
-                case VISIBLE -> {
-                    LinkedList<Vector2Int> hiddenCells = new LinkedList<>();
-                    int flaggedCells = 0;
-                    for (int i = -1; i <= 1; i++) {
-                        for (int j = -1; j <= 1; j++) {
-                            if (i == 0 && j == 0) continue;
-                            int gridX = cellPos.x + i;
-                            int gridY = cellPos.y + j;
-                            if (gridX < 0 || gridX >= width || gridY < 0 || gridY >= height) continue;
-
-                            if (getCellFogAt(gridX, gridY) == CellFogType.HIDDEN) hiddenCells.add(new Vector2Int(gridX, gridY));
-                            if (getCellFogAt(gridX, gridY) == CellFogType.FLAGGED) flaggedCells++;
-                            if (getCellFogAt(gridX, gridY) == CellFogType.VISIBLE && checkForMineAt(gridX, gridY)) flaggedCells++;
-                        }
-                    }
-
-                    if (flaggedCells >= getMarkerAt(cellPos.x, cellPos.y)) visionSpreadProtocol(hiddenCells);
-                }
-            }
-        }
-    }
-
-    public void visionSpreadProtocol(Vector2Int startCell) {
-        LinkedList<Vector2Int> toClear = new LinkedList<>();
-        toClear.add(startCell);
-        visionSpreadProtocol(toClear);
-    }
-
-    public void visionSpreadProtocol(LinkedList<Vector2Int> toClear) {
-        while (!toClear.isEmpty()) {
-            Vector2Int current = toClear.pop();
-            setCellFogAt(current.x, current.y, CellFogType.VISIBLE);
-
-            if (getMarkerAt(current.x, current.y) == 0 && !checkForMineAt(current.x, current.y)) { // Auto clear cells next to 0 markers
-                for (int i = -1; i <= 1; i++) {
-                    for (int j = -1; j <= 1; j++) {
-                        if (i == 0 && j == 0) continue;
-                        int gridX = current.x + i;
-                        int gridY = current.y + j;
-                        if (gridX < 0 || gridX >= width || gridY < 0 || gridY >= height) continue;
-
-                        Vector2Int nextCell = new Vector2Int(gridX, gridY);
-                        if (getCellFogAt(gridX, gridY) == CellFogType.HIDDEN && !toClear.contains(nextCell)) toClear.add(nextCell);
-                    }
-                }
-            }
+        // Only left and right clicks are moves. Chording stays on a right click on a visible cell, like it always was.
+        switch (e.getButton()) {
+            case MouseEvent.BUTTON1 -> interactAtCellPos(cellPos, MinefieldState.BUTTON_REVEAL);
+            case MouseEvent.BUTTON3 -> interactAtCellPos(cellPos, MinefieldState.BUTTON_FLAG);
         }
     }
 
@@ -162,60 +109,89 @@ public class Minefield extends RenderableObject {
             new Color(150, 150, 150)
     };
 
+    // Works out where the cells go, and asks for a full redraw if that moved anything
+    private void updateLayout() {
+        int newCellSize = Math.min(rect.getSizeX() / width, rect.getSizeY() / height); // Find the best cell size
+        int newCornerX = (int) (rect.getGlobalCornerX() + (rect.getSizeX() - newCellSize * width) / 2f); // Upper left corner of the minefield
+        int newCornerY = (int) (rect.getGlobalCornerY() + (rect.getSizeY() - newCellSize * height) / 2f);
+        if (newCellSize != cellSize || newCornerX != minefieldCornerX || newCornerY != minefieldCornerY) {
+            cellSize = newCellSize;
+            minefieldCornerX = newCornerX;
+            minefieldCornerY = newCornerY;
+            mineFont = new Font("Fixed Width", Font.BOLD, cellSize);
+            layoutChanged = true;
+        }
+    }
+
     @Override
     public void render() {
+        updateLayout();
+        layoutChanged = false;
+
         targetCanvas.getTextureGraphics().setColor(Color.DARK_GRAY); // Fill background
         targetCanvas.getTextureGraphics().fill3DRect(rect.getGlobalCornerX(), rect.getGlobalCornerY(), rect.getSizeX(), rect.getSizeY(), false);
+        drawCells(0, 0, width - 1, height - 1);
+    }
 
-        cellSize = Math.min(rect.getSizeX() / width, rect.getSizeY() / height); // Find the best cell size
-        minefieldCornerX = (int) (rect.getGlobalCornerX() + (rect.getSizeX() - cellSize * width) / 2f); // Upper left corner of the minefield
-        minefieldCornerY = (int) (rect.getGlobalCornerY() + (rect.getSizeY() - cellSize * height) / 2f);
+    // Only redraws the cells that overlap the region. The canvas has already clipped its graphics to it.
+    @Override
+    public void renderRegion(Rectangle region) {
+        updateLayout();
+        if (layoutChanged) { // Cells moved since the last frame, so no part of the old picture can be trusted
+            // The canvas already cleared this region, so draw it in full now instead of leaving it blank for a frame.
+            // Everything outside the region gets caught up on the next frame.
+            flagTargetCanvas();
+            render();
+            return;
+        }
 
-        Font mineFont = new Font("Fixed Width", Font.BOLD, cellSize);
-        FontMetrics fm = targetCanvas.getTextureGraphics().getFontMetrics(mineFont);
-        targetCanvas.getTextureGraphics().setFont(mineFont);
+        targetCanvas.getTextureGraphics().setColor(Color.DARK_GRAY);
+        targetCanvas.getTextureGraphics().fill3DRect(rect.getGlobalCornerX(), rect.getGlobalCornerY(), rect.getSizeX(), rect.getSizeY(), false);
+        if (cellSize == 0) return;
+        int minX = Math.max(0, Math.floorDiv(region.x - minefieldCornerX, cellSize));
+        int minY = Math.max(0, Math.floorDiv(region.y - minefieldCornerY, cellSize));
+        int maxX = Math.min(width - 1, Math.floorDiv(region.x + region.width - 1 - minefieldCornerX, cellSize));
+        int maxY = Math.min(height - 1, Math.floorDiv(region.y + region.height - 1 - minefieldCornerY, cellSize));
+        drawCells(minX, minY, maxX, maxY);
+    }
 
+    private void drawCells(int minX, int minY, int maxX, int maxY) {
+        Graphics2D g = targetCanvas.getTextureGraphics();
+        FontMetrics fm = g.getFontMetrics(mineFont);
+        g.setFont(mineFont);
 
-        // Draw cells
-        for (int gridX = 0; gridX < width; gridX++) {
-            for (int gridY = 0; gridY < height; gridY++) {
+        for (int gridX = minX; gridX <= maxX; gridX++) {
+            for (int gridY = minY; gridY <= maxY; gridY++) {
                 switch (getCellFogAt(gridX, gridY)) {
                     case VISIBLE -> {
-                        targetCanvas.getTextureGraphics().setColor(Color.GRAY);
-                        targetCanvas.getTextureGraphics().fill3DRect(minefieldCornerX + gridX * cellSize, minefieldCornerY + gridY * cellSize, cellSize, cellSize, false);
+                        g.setColor(Color.GRAY);
+                        g.fill3DRect(minefieldCornerX + gridX * cellSize, minefieldCornerY + gridY * cellSize, cellSize, cellSize, false);
                         if (checkForMineAt(gridX, gridY)) { // Mine Case
-                            targetCanvas.getTextureGraphics().setColor(Color.RED);
-                            targetCanvas.getTextureGraphics().fillOval(minefieldCornerX + gridX * cellSize, minefieldCornerY + gridY * cellSize,
+                            g.setColor(Color.RED);
+                            g.fillOval(minefieldCornerX + gridX * cellSize, minefieldCornerY + gridY * cellSize,
                                     cellSize - 1, cellSize - 1);
                         } else { // Draw Number Marker
                             int marker = getMarkerAt(gridX, gridY);
                             if (marker < 1) break;
-                            targetCanvas.getTextureGraphics().setColor(markerColors[marker - 1]);
+                            g.setColor(markerColors[marker - 1]);
                             String markerString = Integer.toString(marker);
                             int markerOffsetX = fm.stringWidth(markerString) / 2; // Gotta offset the text so that it appears in the middle of the cell
                             int markerOffsetY = fm.getHeight() / 4; // Not sure why you have to divide by 4, 2 makes more sense, but hey it works so...
-                            targetCanvas.getTextureGraphics().drawString(markerString,
+                            g.drawString(markerString,
                                     minefieldCornerX + (gridX + 0.5f) * cellSize - markerOffsetX,
                                     minefieldCornerY + (gridY + 0.5f) * cellSize + markerOffsetY); // Add the y offset since +y is down the screen
                         }
                     }
                     case FLAGGED -> {
-                        targetCanvas.getTextureGraphics().setColor(Color.GREEN);
-                        targetCanvas.getTextureGraphics().fill3DRect(minefieldCornerX + gridX * cellSize, minefieldCornerY + gridY * cellSize, cellSize, cellSize, true);
+                        g.setColor(Color.GREEN);
+                        g.fill3DRect(minefieldCornerX + gridX * cellSize, minefieldCornerY + gridY * cellSize, cellSize, cellSize, true);
                     }
                     default -> {
-                        targetCanvas.getTextureGraphics().setColor(Color.LIGHT_GRAY);
-                        targetCanvas.getTextureGraphics().fill3DRect(minefieldCornerX + gridX * cellSize, minefieldCornerY + gridY * cellSize, cellSize, cellSize, true);
+                        g.setColor(Color.LIGHT_GRAY);
+                        g.fill3DRect(minefieldCornerX + gridX * cellSize, minefieldCornerY + gridY * cellSize, cellSize, cellSize, true);
                     }
                 }
             }
         }
     }
-
-    public enum CellFogType {
-        HIDDEN,
-        VISIBLE,
-        FLAGGED
-    }
 }
-
@@ -0,0 +1,135 @@
+package Game;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Saves and loads boards in a compact binary format through memory mapped files.
+//
+// Layout (little endian):
+//   [0, 64)   header: magic, version, width, height, totalMines, flags, seed (the rest is reserved)
+//   then the mine, visible and flag bitsets and the marker nibbles, in that order.
+// The planes are stored exactly like PackedMinefieldStorage keeps them in memory, so saving and loading is
+// just a bulk copy per plane, and a snapshot can also be played straight off the mapped file.
+public class MinefieldSnapshot {
+    public static final int MAGIC = 0x4D535750; // "MSWP"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 64;
+
+    private static final int FLAG_MINES_SPREAD = 1;
+
+    public static void save(MinefieldState minefield, Path path) throws IOException {
+        PackedMinefieldStorage storage = toPacked(minefield.getStorage());
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC);
+            header.putInt(VERSION);
+            header.putInt(storage.getWidth());
+            header.putInt(storage.getHeight());
+            header.putInt(minefield.getTotalMines());
+            header.putInt(minefield.areMinesSpread() ? FLAG_MINES_SPREAD : 0);
+            header.putLong(minefield.getSeed());
+
+            long offset = HEADER_SIZE;
+            for (long[] plane : new long[][]{storage.mineBits, storage.visibleBits, storage.flagBits, storage.markerNibbles}) {
+                mapPlane(channel, FileChannel.MapMode.READ_WRITE, offset, plane.length).put(plane);
+                offset += (long) plane.length * Long.BYTES;
+            }
+        }
+    }
+
+    // Loads the snapshot into a PackedMinefieldStorage on the heap. Each plane is copied out of the mapping in bulk.
+    public static MinefieldState load(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            Header header = readHeader(channel);
+            long[][] planes = new long[4][];
+            long offset = HEADER_SIZE;
+            for (int i = 0; i < planes.length; i++) {
+                planes[i] = new long[header.planeWords(i)];
+                mapPlane(channel, FileChannel.MapMode.READ_ONLY, offset, planes[i].length).get(planes[i]);
+                offset += (long) planes[i].length * Long.BYTES;
+            }
+            return header.createMinefield(new PackedMinefieldStorage(header.width, header.height, planes[0], planes[1], planes[2], planes[3]));
+        }
+    }
+
+    // Maps the snapshot without copying it to the heap. The board can be inspected but not played;
+    // any attempt to change it throws an UnsupportedOperationException.
+    public static MinefieldState mapReadOnly(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) { // Mappings stay valid after the channel is closed
+            Header header = readHeader(channel);
+            LongBuffer[] planes = new LongBuffer[4];
+            long offset = HEADER_SIZE;
+            for (int i = 0; i < planes.length; i++) {
+                planes[i] = mapPlane(channel, FileChannel.MapMode.READ_ONLY, offset, header.planeWords(i));
+                offset += (long) header.planeWords(i) * Long.BYTES;
+            }
+            return header.createMinefield(new MappedMinefieldStorage(header.width, header.height, planes[0], planes[1], planes[2], planes[3]));
+        }
+    }
+
+    private static LongBuffer mapPlane(FileChannel channel, FileChannel.MapMode mode, long offset, int words) throws IOException {
+        return channel.map(mode, offset, (long) words * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+    }
+
+    private static PackedMinefieldStorage toPacked(MinefieldStorage storage) {
+        if (storage instanceof PackedMinefieldStorage packed) return packed;
+
+        PackedMinefieldStorage packed = new PackedMinefieldStorage(storage.getWidth(), storage.getHeight());
+        for (int y = 0; y < storage.getHeight(); y++) {
+            for (int x = 0; x < storage.getWidth(); x++) {
+                packed.setMine(x, y, storage.isMine(x, y));
+                packed.setMarker(x, y, storage.getMarker(x, y));
+                packed.setFog(x, y, storage.getFog(x, y));
+            }
+        }
+        return packed;
+    }
+
+    private static Header readHeader(FileChannel channel) throws IOException {
+        if (channel.size() < HEADER_SIZE) throw new IOException("Not a minefield snapshot: file is too small");
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.getInt() != MAGIC) throw new IOException("Not a minefield snapshot: bad magic number");
+        int version = buffer.getInt();
+        if (version != VERSION) throw new IOException("Unsupported minefield snapshot version " + version);
+
+        Header header = new Header();
+        header.width = buffer.getInt();
+        header.height = buffer.getInt();
+        header.totalMines = buffer.getInt();
+        header.flags = buffer.getInt();
+        header.seed = buffer.getLong();
+        if (header.width <= 0 || header.height <= 0 || (long) header.width * header.height > Integer.MAX_VALUE)
+            throw new IOException("Corrupt minefield snapshot: invalid board size " + header.width + "x" + header.height);
+
+        long expectedSize = HEADER_SIZE;
+        for (int i = 0; i < 4; i++) expectedSize += (long) header.planeWords(i) * Long.BYTES;
+        if (channel.size() < expectedSize) throw new IOException("Corrupt minefield snapshot: file is truncated");
+        return header;
+    }
+
+    private static class Header {
+        int width, height, totalMines, flags;
+        long seed;
+
+        int planeWords(int plane) {
+            int cells = width * height;
+            return plane == 3 ? PackedMinefieldStorage.nibbleWords(cells) : PackedMinefieldStorage.bitWords(cells);
+        }
+
+        MinefieldState createMinefield(MinefieldStorage storage) {
+            MinefieldState minefield = new MinefieldState(storage, totalMines);
+            minefield.setSeed(seed);
+            minefield.setMinesSpread((flags & FLAG_MINES_SPREAD) != 0);
+            return minefield;
+        }
+    }
+}
@@ -0,0 +1,524 @@
+package Game;
+
+import Utils.Vector2Int;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.Random;
+
+// The game state of a minefield, with no rendering attached. Minefield wraps this to draw it on a TCanvas,
+// but it can also be played on its own, e.g. by the AI on a headless server.
+public class MinefieldState {
+    // The button types interactAtCellPos() understands. Minefield maps mouse buttons onto these; the middle button does nothing.
+    public static final int BUTTON_REVEAL = 1;
+    public static final int BUTTON_CHORD = 2; // Only chords, and only on visible cells
+    public static final int BUTTON_FLAG = 3;
+
+    private int width, height, totalMines;
+    private MinefieldStorage storage; // Keeps track of mines, markers and fog for every cell
+    private FloodFill floodFill;
+    private MoveJournal journal; // Records every interaction if set
+
+    private long seed = new Random().nextLong();
+    private boolean minesSpread;
+    private long revealedMines;
+    private MoveHistory history = new MoveHistory(); // null when undo is turned off
+
+    private ArrayList<ChangeListener> changeListeners = new ArrayList<>();
+
+    public MinefieldState(int width, int height, int totalMines) {
+        this(new ArrayMinefieldStorage(width, height), totalMines);
+    }
+
+    // Use a PackedMinefieldStorage here for very large boards
+    public MinefieldState(MinefieldStorage storage, int totalMines) {
+        this.storage = storage;
+        this.width = storage.getWidth();
+        this.height = storage.getHeight();
+        // The mines only get spread on the first click, so catch a board they can't fit on now rather than mid-game
+        long openCells = (long) width * height - Math.min(3, width) * Math.min(3, height); // The first click keeps a 3x3 free
+        if (totalMines < 0 || totalMines > openCells)
+            throw new IllegalArgumentException(totalMines + " mines don't fit on a " + width + "x" + height + " board");
+        this.totalMines = totalMines;
+        floodFill = new FloodFill(storage);
+        floodFill.setHistory(history);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getTotalMines() {
+        return totalMines;
+    }
+
+    public MinefieldStorage getStorage() {
+        return storage;
+    }
+
+    public MoveJournal getJournal() {
+        return journal;
+    }
+
+    public void setJournal(MoveJournal journal) {
+        this.journal = journal;
+    }
+
+    public boolean checkForMineAt(int x, int y) {
+        return storage.isMine(x, y);
+    }
+
+    public int getMarkerAt(int x, int y) {
+        return storage.getMarker(x, y);
+    }
+
+    public CellFogType getCellFogAt(int x, int y) {
+        return storage.getFog(x, y);
+    }
+
+    public void setCellFogAt(int x, int y, CellFogType fog) {
+        if (history != null) history.beginMove();
+        changeFog(x, y, fog);
+        if (history != null) history.endMove();
+        notifyCellsChanged(x, y, x, y);
+    }
+
+    // Every fog change outside of the flood fill goes through here, so it can be undone
+    private void changeFog(int x, int y, CellFogType fog) {
+        CellFogType oldFog = storage.getFog(x, y);
+        if (oldFog == fog) return;
+        storage.setFog(x, y, fog);
+        if (storage.isMine(x, y)) {
+            if (oldFog == CellFogType.VISIBLE) revealedMines--;
+            if (fog == CellFogType.VISIBLE) revealedMines++;
+        }
+        if (history != null) history.recordChange((long) y * width + x, oldFog, fog);
+    }
+
+    public long countVisibleCells() {
+        return storage.countVisible();
+    }
+
+    public long countFlags() {
+        return storage.countFlags();
+    }
+
+    public long countHiddenCells() {
+        return storage.countHidden();
+    }
+
+    //region Game Status
+
+    // True once a mine has been revealed
+    public boolean isLost() {
+        return revealedMines > 0;
+    }
+
+    // True once every cell without a mine has been revealed
+    public boolean isWon() {
+        return revealedMines == 0 && storage.countVisible() == (long) width * height - totalMines;
+    }
+
+    public boolean isFinished() {
+        return isLost() || isWon();
+    }
+
+    //endregion
+
+    //region Change Listeners
+
+    public interface ChangeListener {
+        // Called after the fog of every cell in the given range (inclusive) may have changed
+        void onCellsChanged(int minX, int minY, int maxX, int maxY);
+    }
+
+    public void addChangeListener(ChangeListener listener) {
+        changeListeners.add(listener);
+    }
+
+    public void removeChangeListener(ChangeListener listener) {
+        changeListeners.remove(listener);
+    }
+
+    private void notifyCellsChanged(int minX, int minY, int maxX, int maxY) {
+        for (ChangeListener listener : changeListeners) {
+            listener.onCellsChanged(minX, minY, maxX, maxY);
+        }
+    }
+
+    //endregion
+
+    public long getSeed() {
+        return seed;
+    }
+
+    // Set this before the first click to get the same board every time
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public boolean areMinesSpread() {
+        return minesSpread;
+    }
+
+    // Used when restoring a saved board
+    void setMinesSpread(boolean minesSpread) {
+        this.minesSpread = minesSpread;
+    }
+
+    public void spreadMines() {
+        spreadMines(seed, -1, -1);
+    }
+
+    // Places every mine in O(totalMines), whatever the density, using Floyd's sampling algorithm.
+    // No mines are placed in the 3x3 region around (safeX, safeY); pass -1 to leave the whole board open.
+    // The markers are counted up as each mine is placed, so the board is finished in a single pass.
+    public void spreadMines(long seed, int safeX, int safeY) {
+        if (storage.generatesOwnMines() || minesSpread) return;
+        this.seed = seed;
+        if (journal != null) journal.recordSeed(seed); // The seed might have changed since the journal was started
+
+        // Indices of the protected cells, in ascending order
+        long[] protectedCells = new long[9];
+        int protectedCount = 0;
+        if (safeX >= 0 && safeY >= 0) {
+            for (int deltaY = -1; deltaY <= 1; deltaY++) {
+                for (int deltaX = -1; deltaX <= 1; deltaX++) {
+                    if (safeX + deltaX < 0 || safeX + deltaX >= width) continue;
+                    if (safeY + deltaY < 0 || safeY + deltaY >= height) continue;
+                    protectedCells[protectedCount++] = (long) (safeY + deltaY) * width + safeX + deltaX;
+                }
+            }
+        }
+
+        long openCells = (long) width * height - protectedCount;
+        if (totalMines > openCells)
+            throw new IllegalArgumentException(totalMines + " mines don't fit in the " + openCells + " open cells of the board");
+
+        // Floyd's algorithm picks totalMines distinct open cells, and uses the mines already placed as its "chosen" set
+        Random rand = new Random(seed);
+        for (long j = openCells - totalMines; j < openCells; j++) {
+            long cell = openCellToIndex(rand.nextLong(j + 1), protectedCells, protectedCount);
+            int x = (int) (cell % width);
+            int y = (int) (cell / width);
+            if (storage.isMine(x, y)) { // Already taken, so take cell j instead, which can't have been picked yet
+                cell = openCellToIndex(j, protectedCells, protectedCount);
+                x = (int) (cell % width);
+                y = (int) (cell / width);
+            }
+            placeMine(x, y);
+        }
+        minesSpread = true;
+    }
+
+    // Maps the n-th open cell to its board index by skipping over the protected cells in front of it
+    private static long openCellToIndex(long n, long[] protectedCells, int protectedCount) {
+        long index = n;
+        for (int i = 0; i < protectedCount; i++) {
+            if (protectedCells[i] <= index) index++;
+        }
+        return index;
+    }
+
+    private void placeMine(int x, int y) {
+        storage.setMine(x, y, true);
+        for (int deltaX = -1; deltaX <= 1; deltaX++) {
+            for (int deltaY = -1; deltaY <= 1; deltaY++) {
+                if (deltaX == 0 && deltaY == 0) continue;
+                if (x + deltaX < 0 || x + deltaX >= width) continue;
+                if (y + deltaY < 0 || y + deltaY >= height) continue;
+                storage.setMarker(x + deltaX, y + deltaY, storage.getMarker(x + deltaX, y + deltaY) + 1);
+            }
+        }
+    }
+
+    public void interactAtCellPos(Vector2Int cellPos, int buttonType) { // helper function so that AI can interact with board
+        if (buttonType < BUTTON_REVEAL || buttonType > BUTTON_FLAG) return; // Not a move, so don't let it into the journal either
+        if (journal != null) journal.record(cellPos.x, cellPos.y, buttonType);
+        if (history != null) history.beginMove();
+        try {
+            interact(cellPos, buttonType);
+        } finally {
+            if (history != null) history.endMove();
+        }
+    }
+
+    private void interact(Vector2Int cellPos, int buttonType) {
+        if (buttonType == BUTTON_REVEAL && !minesSpread) spreadMines(seed, cellPos.x, cellPos.y); // The first click is always safe
+        CellFogType fogType = getCellFogAt(cellPos.x, cellPos.y);
+        if (buttonType == BUTTON_REVEAL && fogType == CellFogType.HIDDEN)
+            visionSpreadProtocol(cellPos);
+        if (buttonType == BUTTON_CHORD && fogType == CellFogType.VISIBLE) {
+            if (addChordStarts(cellPos.x, cellPos.y)) finishVisionSpread();
+        }
+        if (buttonType == BUTTON_FLAG) {
+            switch (getCellFogAt(cellPos.x, cellPos.y)) {
+                case FLAGGED -> setCellFogAt(cellPos.x, cellPos.y, CellFogType.HIDDEN);
+                case HIDDEN -> setCellFogAt(cellPos.x, cellPos.y, CellFogType.FLAGGED);
+                case VISIBLE -> {
+                    if (addChordStarts(cellPos.x, cellPos.y)) finishVisionSpread();
+                }
+            }
+        }
+    }
+
+    // Chording: if a visible cell already has enough flags around it, every other hidden cell around it gets revealed.
+    // Queues those cells for the flood fill and returns true if the chord went off.
+    private boolean addChordStarts(int x, int y) {
+        int flaggedCells = 0;
+        int hiddenCells = 0;
+        for (int i = -1; i <= 1; i++) {
+            for (int j = -1; j <= 1; j++) {
+                if (i == 0 && j == 0) continue;
+                int gridX = x + i;
+                int gridY = y + j;
+                if (gridX < 0 || gridX >= width || gridY < 0 || gridY >= height) continue;
+
+                CellFogType fog = getCellFogAt(gridX, gridY);
+                if (fog == CellFogType.HIDDEN) hiddenCells++;
+                if (fog == CellFogType.FLAGGED) flaggedCells++;
+                if (fog == CellFogType.VISIBLE && checkForMineAt(gridX, gridY)) flaggedCells++;
+            }
+        }
+        if (flaggedCells < getMarkerAt(x, y) || hiddenCells == 0) return false;
+
+        // Only start revealing once everything is counted, since revealing a mine would change the count
+        for (int i = -1; i <= 1; i++) {
+            for (int j = -1; j <= 1; j++) {
+                if (i == 0 && j == 0) continue;
+                int gridX = x + i;
+                int gridY = y + j;
+                if (gridX < 0 || gridX >= width || gridY < 0 || gridY >= height) continue;
+                if (getCellFogAt(gridX, gridY) == CellFogType.HIDDEN) addVisionSpreadStart(gridX, gridY);
+            }
+        }
+        return true;
+    }
+
+    //region Undo and Redo
+
+    public MoveHistory getHistory() {
+        return history;
+    }
+
+    // Undo is on by default. Turning it off (e.g. for bots) throws the history away and stops recording.
+    public void setUndoEnabled(boolean enabled) {
+        if (enabled == (history != null)) return;
+        history = enabled ? new MoveHistory() : null;
+        floodFill.setHistory(history);
+    }
+
+    // Takes back the last move. Returns false if there was nothing to undo.
+    public boolean undo() {
+        if (history == null || !history.canUndo()) return false;
+        if (journal != null) journal.recordUndo();
+        return restoreFog(true);
+    }
+
+    // Makes the last undone move again. Returns false if there was nothing to redo.
+    public boolean redo() {
+        if (history == null || !history.canRedo()) return false;
+        if (journal != null) journal.recordRedo();
+        return restoreFog(false);
+    }
+
+    private boolean restoreFog(boolean undo) {
+        int[] bounds = {Integer.MAX_VALUE, Integer.MAX_VALUE, -1, -1};
+        MoveHistory.ChangeApplier applier = (cell, fog) -> {
+            int x = (int) (cell % width);
+            int y = (int) (cell / width);
+            CellFogType oldFog = storage.getFog(x, y);
+            storage.setFog(x, y, fog);
+            if (storage.isMine(x, y)) {
+                if (oldFog == CellFogType.VISIBLE) revealedMines--;
+                if (fog == CellFogType.VISIBLE) revealedMines++;
+            }
+            bounds[0] = Math.min(bounds[0], x);
+            bounds[1] = Math.min(bounds[1], y);
+            bounds[2] = Math.max(bounds[2], x);
+            bounds[3] = Math.max(bounds[3], y);
+        };
+        boolean restored = undo ? history.undo(applier) : history.redo(applier);
+        if (bounds[2] >= 0) notifyCellsChanged(bounds[0], bounds[1], bounds[2], bounds[3]);
+        return restored;
+    }
+
+    //endregion
+
+    //region Batches
+
+    // A set of moves to be applied together with applyBatch()
+    public static class Batch {
+        static final int REVEAL = 0, FLAG = 1, CHORD = 2, DONE = 3;
+
+        long[] keys = new long[16]; // (cell index << 2) | move type, so sorting groups the moves on each cell together
+        int size;
+
+        private final long width;
+
+        public Batch(MinefieldState state) {
+            this.width = state.getWidth();
+        }
+
+        public Batch reveal(int x, int y) {
+            return add(x, y, REVEAL);
+        }
+
+        // Toggles the flag on a hidden cell, or chords if the cell is visible, just like BUTTON_FLAG
+        public Batch flag(int x, int y) {
+            return add(x, y, FLAG);
+        }
+
+        // Chords on a visible cell, and does nothing to any other cell
+        public Batch chord(int x, int y) {
+            return add(x, y, CHORD);
+        }
+
+        public Batch add(Vector2Int cellPos, int buttonType) {
+            if (buttonType == BUTTON_REVEAL) return reveal(cellPos.x, cellPos.y);
+            if (buttonType == BUTTON_FLAG) return flag(cellPos.x, cellPos.y);
+            if (buttonType == BUTTON_CHORD) return chord(cellPos.x, cellPos.y);
+            return this;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public void clear() {
+            size = 0;
+        }
+
+        private Batch add(int x, int y, int type) {
+            if (size == keys.length) keys = Arrays.copyOf(keys, size * 2);
+            keys[size++] = (((long) y * width + x) << 2) | type;
+            return this;
+        }
+    }
+
+    // Applies every move in the batch at once. Duplicate moves are only applied once, a cell that is both revealed
+    // and flagged only gets revealed, and all the reveals and chords share a single flood fill.
+    // Listeners are told about the changes once, at the end. Returns the number of cells revealed.
+    public int applyBatch(Batch batch) {
+        if (history != null) history.beginMove(); // The whole batch is undone as one move
+        try {
+            return applyBatchMoves(batch);
+        } finally {
+            if (history != null) history.endMove();
+        }
+    }
+
+    private int applyBatchMoves(Batch batch) {
+        long[] keys = Arrays.copyOf(batch.keys, batch.size);
+        Arrays.sort(keys);
+        int count = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (count == 0 || keys[i] != keys[count - 1]) keys[count++] = keys[i];
+        }
+        if (count == 0) return 0;
+
+        if (journal != null) {
+            journal.recordBatchStart(count);
+            for (int i = 0; i < count; i++) {
+                long cell = keys[i] >>> 2;
+                journal.record((int) (cell % width), (int) (cell / width), switch ((int) (keys[i] & 3)) {
+                    case Batch.REVEAL -> BUTTON_REVEAL;
+                    case Batch.CHORD -> BUTTON_CHORD;
+                    default -> BUTTON_FLAG;
+                });
+            }
+        }
+
+        // The first reveal of a fresh board is the safe one
+        if (!minesSpread) {
+            for (int i = 0; i < count; i++) {
+                if ((keys[i] & 3) != Batch.REVEAL) continue;
+                long cell = keys[i] >>> 2;
+                spreadMines(seed, (int) (cell % width), (int) (cell / width));
+                break;
+            }
+        }
+
+        // Flags go first so the chords can count them
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, maxX = -1, maxY = -1;
+        for (int i = 0; i < count; i++) {
+            if ((keys[i] & 3) != Batch.FLAG) continue;
+            long cell = keys[i] >>> 2;
+            if (i > 0 && keys[i - 1] >>> 2 == cell) continue; // The cell is being revealed, which beats flagging it
+            int x = (int) (cell % width);
+            int y = (int) (cell / width);
+            CellFogType fog = storage.getFog(x, y);
+            if (fog == CellFogType.VISIBLE) { // Flagging a visible cell chords it
+                keys[i] = (cell << 2) | Batch.CHORD;
+                continue;
+            }
+            changeFog(x, y, fog == CellFogType.HIDDEN ? CellFogType.FLAGGED : CellFogType.HIDDEN);
+            keys[i] = (cell << 2) | Batch.DONE;
+            minX = Math.min(minX, x);
+            minY = Math.min(minY, y);
+            maxX = Math.max(maxX, x);
+            maxY = Math.max(maxY, y);
+        }
+
+        for (int i = 0; i < count; i++) {
+            int type = (int) (keys[i] & 3);
+            long cell = keys[i] >>> 2;
+            int x = (int) (cell % width);
+            int y = (int) (cell / width);
+            if (type == Batch.REVEAL) {
+                if (storage.getFog(x, y) == CellFogType.HIDDEN) addVisionSpreadStart(x, y);
+            } else if (type == Batch.CHORD) {
+                if (i > 0 && keys[i - 1] == keys[i]) continue; // Both flagged and chorded, but it only needs chording once
+                if (storage.getFog(x, y) == CellFogType.VISIBLE) addChordStarts(x, y);
+            }
+        }
+
+        int revealed = floodFill.run();
+        if (revealed > 0) {
+            minX = Math.min(minX, floodFill.getRevealedMinX());
+            minY = Math.min(minY, floodFill.getRevealedMinY());
+            maxX = Math.max(maxX, floodFill.getRevealedMaxX());
+            maxY = Math.max(maxY, floodFill.getRevealedMaxY());
+        }
+        if (maxX >= 0) notifyCellsChanged(minX, minY, maxX, maxY);
+        return revealed;
+    }
+
+    //endregion
+
+    // Reveals the start cell and opens up the empty region around it. Returns the number of cells revealed.
+    public int visionSpreadProtocol(Vector2Int startCell) {
+        addVisionSpreadStart(startCell.x, startCell.y);
+        return finishVisionSpread();
+    }
+
+    public int visionSpreadProtocol(LinkedList<Vector2Int> toClear) {
+        for (Vector2Int cell : toClear) {
+            addVisionSpreadStart(cell.x, cell.y);
+        }
+        return finishVisionSpread();
+    }
+
+    private void addVisionSpreadStart(int x, int y) {
+        if (storage.isMine(x, y) && storage.getFog(x, y) != CellFogType.VISIBLE) revealedMines++;
+        floodFill.add(x, y);
+    }
+
+    private int finishVisionSpread() {
+        int revealed = floodFill.run();
+        if (revealed > 0) // Only tell the listeners once for the whole region
+            notifyCellsChanged(floodFill.getRevealedMinX(), floodFill.getRevealedMinY(), floodFill.getRevealedMaxX(), floodFill.getRevealedMaxY());
+        return revealed;
+    }
+
+    public enum CellFogType {
+        HIDDEN,
+        VISIBLE,
+        FLAGGED
+    }
+}
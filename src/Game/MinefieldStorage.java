@@ -0,0 +1,47 @@
+package Game;
+
+// Holds the raw cell data of a MinefieldState (mines, markers and fog).
+// Cells are addressed either by (x, y) or by their index y * width + x.
+public interface MinefieldStorage {
+    int getWidth();
+    int getHeight();
+
+    boolean isMine(int x, int y);
+    void setMine(int x, int y, boolean mine);
+
+    int getMarker(int x, int y);
+    void setMarker(int x, int y, int marker);
+
+    MinefieldState.CellFogType getFog(int x, int y);
+    void setFog(int x, int y, MinefieldState.CellFogType fog);
+
+    // True if the storage places its own mines, in which case MinefieldState.spreadMines() leaves it alone
+    default boolean generatesOwnMines() {
+        return false;
+    }
+
+    //region Bulk Operations
+
+    long countVisible();
+    long countFlags();
+
+    default long countHidden() {
+        return (long) getWidth() * getHeight() - countVisible() - countFlags();
+    }
+
+    // Returns the index of the first hidden cell at or after fromIndex, or -1 if there are none left
+    long nextHiddenCell(long fromIndex);
+
+    // Writes the indices of up to out.length hidden cells into out, starting at fromIndex. Returns the number written.
+    default int findHiddenCells(long fromIndex, long[] out) {
+        int found = 0;
+        long i = nextHiddenCell(fromIndex);
+        while (i != -1 && found < out.length) {
+            out[found++] = i;
+            i = nextHiddenCell(i + 1);
+        }
+        return found;
+    }
+
+    //endregion
+}
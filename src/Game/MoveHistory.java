@@ -0,0 +1,160 @@
+package Game;
+
+import java.util.Arrays;
+
+// Undo/redo history for a MinefieldState. Only mines never change after they're spread, so a move is just
+// the list of cells whose fog it changed, with the fog before and after. Memory, undo and redo all scale
+// with the number of cells a move touched, never with the size of the board.
+// Changes are kept in flat primitive arrays, with moveStarts marking where each move's changes begin.
+// The history is capped by both moves and changes. Going over either drops the oldest moves first, down to 3/4 of
+// the cap so the shuffling along only happens every so often. The newest move is always kept, however big it is.
+public class MoveHistory {
+    public static final int DEFAULT_MAX_MOVES = 10_000;
+    public static final int DEFAULT_MAX_CHANGES = 1 << 20; // About 10 MB of changes
+
+    private long[] cells = new long[256];
+    private byte[] oldFog = new byte[256];
+    private byte[] newFog = new byte[256];
+    private int changeCount;
+
+    private int[] moveStarts = new int[64];
+    private int moveCount; // Moves that can be undone, plus moves that can be redone
+    private int currentMove; // Moves before this one are done, the rest have been undone
+    private int moveDepth; // Moves made inside other moves belong to the outermost one
+    private boolean moveHasChanges;
+
+    private int maxMoves = DEFAULT_MAX_MOVES;
+    private int maxChanges = DEFAULT_MAX_CHANGES;
+
+    private static final MinefieldState.CellFogType[] FOG_TYPES = MinefieldState.CellFogType.values();
+
+    public boolean canUndo() {
+        return currentMove > 0;
+    }
+
+    public boolean canRedo() {
+        return currentMove < moveCount;
+    }
+
+    public int getUndoableMoves() {
+        return currentMove;
+    }
+
+    public int getRedoableMoves() {
+        return moveCount - currentMove;
+    }
+
+    public void clear() {
+        changeCount = moveCount = currentMove = moveDepth = 0;
+    }
+
+    public int getMaxMoves() {
+        return maxMoves;
+    }
+
+    public void setMaxMoves(int maxMoves) {
+        if (maxMoves < 1) throw new IllegalArgumentException("Need room for at least one move");
+        this.maxMoves = maxMoves;
+        if (moveDepth == 0) trim();
+    }
+
+    public int getMaxChanges() {
+        return maxChanges;
+    }
+
+    public void setMaxChanges(int maxChanges) {
+        if (maxChanges < 1) throw new IllegalArgumentException("Need room for at least one change");
+        this.maxChanges = maxChanges;
+        if (moveDepth == 0) trim();
+    }
+
+    //region Recording
+
+    // Starts recording a new move
+    void beginMove() {
+        if (moveDepth++ > 0) return;
+        moveHasChanges = false;
+    }
+
+    // The first change of a move throws away anything that was undone, since it can't be redone after this
+    void recordChange(long cell, MinefieldState.CellFogType from, MinefieldState.CellFogType to) {
+        if (moveDepth == 0 || from == to) return;
+        if (!moveHasChanges) {
+            if (currentMove < moveCount) changeCount = moveStarts[currentMove];
+            moveCount = currentMove;
+            if (moveCount == moveStarts.length) moveStarts = Arrays.copyOf(moveStarts, moveCount * 2);
+            moveStarts[moveCount] = changeCount;
+            moveHasChanges = true;
+        }
+
+        if (changeCount == cells.length) {
+            cells = Arrays.copyOf(cells, changeCount * 2);
+            oldFog = Arrays.copyOf(oldFog, changeCount * 2);
+            newFog = Arrays.copyOf(newFog, changeCount * 2);
+        }
+        cells[changeCount] = cell;
+        oldFog[changeCount] = (byte) from.ordinal();
+        newFog[changeCount] = (byte) to.ordinal();
+        changeCount++;
+    }
+
+    void endMove() {
+        if (moveDepth == 0 || --moveDepth > 0) return;
+        if (!moveHasChanges) return; // Nothing changed, so there's nothing to undo
+        moveCount++;
+        currentMove = moveCount;
+        trim();
+    }
+
+    // Drops the oldest moves once either cap is passed
+    private void trim() {
+        if (moveCount <= maxMoves && changeCount <= maxChanges) return;
+        if (currentMove < moveCount) { // Only when a cap got lowered. Old moves can't go before the undone ones after them.
+            changeCount = moveStarts[currentMove];
+            moveCount = currentMove;
+        }
+        int moveTarget = Math.max(1, maxMoves - maxMoves / 4);
+        int changeTarget = Math.max(1, maxChanges - maxChanges / 4);
+
+        int dropped = Math.max(0, moveCount - moveTarget);
+        while (dropped < moveCount - 1 && changeCount - moveStarts[dropped] > changeTarget) dropped++;
+        if (dropped == 0) return;
+
+        int offset = moveStarts[dropped];
+        System.arraycopy(cells, offset, cells, 0, changeCount - offset);
+        System.arraycopy(oldFog, offset, oldFog, 0, changeCount - offset);
+        System.arraycopy(newFog, offset, newFog, 0, changeCount - offset);
+        changeCount -= offset;
+        for (int i = dropped; i < moveCount; i++) moveStarts[i - dropped] = moveStarts[i] - offset;
+        moveCount -= dropped;
+        currentMove = moveCount;
+    }
+
+    //endregion
+
+    //region Undo and Redo
+
+    public interface ChangeApplier {
+        void apply(long cell, MinefieldState.CellFogType fog);
+    }
+
+    // Hands the applier the old fog of every cell changed by the last move, newest change first
+    boolean undo(ChangeApplier applier) {
+        if (!canUndo()) return false;
+        currentMove--;
+        int end = currentMove + 1 < moveCount ? moveStarts[currentMove + 1] : changeCount;
+        for (int i = end - 1; i >= moveStarts[currentMove]; i--) applier.apply(cells[i], FOG_TYPES[oldFog[i]]);
+        return true;
+    }
+
+    // Hands the applier the new fog of every cell changed by the next undone move, oldest change first
+    boolean redo(ChangeApplier applier) {
+        if (!canRedo()) return false;
+        int end = currentMove + 1 < moveCount ? moveStarts[currentMove + 1] : changeCount;
+        for (int i = moveStarts[currentMove]; i < end; i++) applier.apply(cells[i], FOG_TYPES[newFog[i]]);
+        currentMove++;
+        return true;
+    }
+
+    //endregion
+}
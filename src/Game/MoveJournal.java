@@ -0,0 +1,216 @@
+package Game;
+
+import Utils.Vector2Int;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Append-only binary log of every move made on a MinefieldState, and a replay engine that rebuilds boards from one.
+//
+// Layout (little endian):
+//   header: magic, version, width, height, totalMines, seed, start time (epoch millis)
+//   records: cell index (long), kind (byte), button (byte), nanoseconds since the journal was started (long)
+// The kind tells moves apart from everything else, so no button value can be mistaken for another kind of record.
+// A batch is written as a BATCH record holding the number of moves in its cell index, followed by the moves.
+// Since mines are spread from the seed on the first click, the seed plus the moves is enough to rebuild the
+// whole board, as long as the journal is attached before the first click. The header seed gets rewritten when the
+// mines are spread, so it's the one they were actually spread with, even if the seed changed after the journal started.
+public class MoveJournal implements Closeable {
+    public static final int MAGIC = 0x4D53574A; // "MSWJ"
+    public static final int VERSION = 2; // 1 had no kind byte and stored batches, undo and redo as odd buttons
+    public static final int HEADER_SIZE = 36;
+    public static final int RECORD_SIZE = 18;
+    private static final int SEED_OFFSET = 20; // Where the seed sits in the header
+
+    // Record kinds
+    public static final int MOVE = 0;
+    public static final int BATCH = 1; // Holds the number of moves in the batch instead of a cell
+    public static final int UNDO = 2, REDO = 3; // Have no cell or button
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private final int width;
+    private final long startNanos;
+    private long movesWritten;
+
+    // Starts a new journal for the minefield, replacing whatever was at path, and attaches it
+    public MoveJournal(Path path, MinefieldState minefield) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        width = minefield.getWidth();
+        startNanos = System.nanoTime();
+
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(minefield.getWidth());
+        buffer.putInt(minefield.getHeight());
+        buffer.putInt(minefield.getTotalMines());
+        buffer.putLong(minefield.getSeed());
+        buffer.putLong(System.currentTimeMillis());
+        flush();
+
+        minefield.setJournal(this);
+    }
+
+    public long getMovesWritten() {
+        return movesWritten;
+    }
+
+    public void record(int x, int y, int buttonType) {
+        write(MOVE, (long) y * width + x, buttonType);
+        movesWritten++;
+    }
+
+    // Overwrites the seed in the header. Called by MinefieldState when it spreads its mines.
+    public void recordSeed(long seed) {
+        ByteBuffer seedBuffer = ByteBuffer.allocate(Long.BYTES).order(ByteOrder.LITTLE_ENDIAN).putLong(seed).flip();
+        try {
+            long position = SEED_OFFSET;
+            while (seedBuffer.hasRemaining()) position += channel.write(seedBuffer, position);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // The next moveCount moves recorded belong to one MinefieldState.applyBatch() call
+    public void recordBatchStart(int moveCount) {
+        write(BATCH, moveCount, 0);
+    }
+
+    public void recordUndo() {
+        write(UNDO, 0, 0);
+    }
+
+    public void recordRedo() {
+        write(REDO, 0, 0);
+    }
+
+    private void write(int kind, long cellIndex, int buttonType) {
+        try {
+            if (buffer.remaining() < RECORD_SIZE) flush();
+            buffer.putLong(cellIndex);
+            buffer.put((byte) kind);
+            buffer.put((byte) buttonType);
+            buffer.putLong(System.nanoTime() - startNanos);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Writes all buffered moves to the file
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        channel.close();
+    }
+
+    //region Replay
+
+    public interface MoveConsumer {
+        void accept(int kind, long cellIndex, int buttonType, long nanosSinceStart);
+    }
+
+    public static class Header {
+        public int width, height, totalMines;
+        public long seed, startTimeMillis;
+    }
+
+    // Rebuilds the board by playing every move in the journal as fast as possible. Nothing is rendered.
+    public static MinefieldState replay(Path path) throws IOException {
+        return replay(path, null);
+    }
+
+    // Like replay(path), but plays on the given storage. Pass null to use the default storage.
+    public static MinefieldState replay(Path path, MinefieldStorage storage) throws IOException {
+        MinefieldState[] minefield = new MinefieldState[1];
+        MinefieldState.Batch[] batch = new MinefieldState.Batch[1];
+        int[] batchMovesLeft = new int[1];
+        read(path, header -> {
+            MinefieldStorage target = storage != null ? storage : new ArrayMinefieldStorage(header.width, header.height);
+            minefield[0] = new MinefieldState(target, header.totalMines);
+            minefield[0].setSeed(header.seed);
+            batch[0] = new MinefieldState.Batch(minefield[0]);
+        }, (kind, cellIndex, buttonType, nanos) -> {
+            switch (kind) {
+                case UNDO -> minefield[0].undo();
+                case REDO -> minefield[0].redo();
+                case BATCH -> {
+                    batch[0].clear();
+                    batchMovesLeft[0] = (int) cellIndex;
+                }
+                default -> replayMove(minefield[0], batch[0], batchMovesLeft, cellIndex, buttonType);
+            }
+        });
+        return minefield[0];
+    }
+
+    private static void replayMove(MinefieldState minefield, MinefieldState.Batch batch, int[] batchMovesLeft, long cellIndex, int buttonType) {
+        Vector2Int cell = new Vector2Int((int) (cellIndex % minefield.getWidth()), (int) (cellIndex / minefield.getWidth()));
+        if (batchMovesLeft[0] > 0) { // Batches have to be applied whole to come out the same
+            batch.add(cell, buttonType);
+            if (--batchMovesLeft[0] == 0) minefield.applyBatch(batch);
+        } else {
+            minefield.interactAtCellPos(cell, buttonType);
+        }
+    }
+
+    public interface HeaderConsumer {
+        void accept(Header header);
+    }
+
+    // Streams the header and then every move of a journal. A partially written last record is ignored.
+    public static void read(Path path, HeaderConsumer headerConsumer, MoveConsumer moveConsumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, buffer, HEADER_SIZE);
+            if (buffer.getInt() != MAGIC) throw new IOException("Not a move journal: bad magic number");
+            int version = buffer.getInt();
+            if (version != VERSION) throw new IOException("Unsupported move journal version " + version);
+
+            Header header = new Header();
+            header.width = buffer.getInt();
+            header.height = buffer.getInt();
+            header.totalMines = buffer.getInt();
+            header.seed = buffer.getLong();
+            header.startTimeMillis = buffer.getLong();
+            headerConsumer.accept(header);
+
+            buffer.clear();
+            while (channel.read(buffer) > 0 || buffer.position() >= RECORD_SIZE) {
+                buffer.flip();
+                while (buffer.remaining() >= RECORD_SIZE) {
+                    long cellIndex = buffer.getLong();
+                    int kind = buffer.get();
+                    if (kind < MOVE || kind > REDO) throw new IOException("Move journal has a record of unknown kind " + kind);
+                    int buttonType = buffer.get();
+                    long nanos = buffer.getLong();
+                    moveConsumer.accept(kind, cellIndex, buttonType, nanos);
+                }
+                buffer.compact(); // Keep any half-read record for the next pass
+            }
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, int bytes) throws IOException {
+        buffer.limit(bytes);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) throw new IOException("Move journal is truncated");
+        }
+        buffer.flip();
+    }
+
+    //endregion
+}
@@ -0,0 +1,151 @@
+package Game;
+
+// Bit-packed storage for very large boards.
+// Mines, visibility and flags are kept as long[] bitsets (1 bit per cell each), and markers are
+// packed 16 to a long as 4-bit nibbles, so a cell costs 7 bits instead of 9+ bytes.
+// A cell is FLAGGED if its flag bit is set, VISIBLE if its visible bit is set, and HIDDEN otherwise.
+public class PackedMinefieldStorage implements MinefieldStorage {
+    private final int width, height, cellCount;
+    final long[] mineBits;
+    final long[] visibleBits;
+    final long[] flagBits;
+    final long[] markerNibbles;
+
+    public PackedMinefieldStorage(int width, int height) {
+        this(width, height, null, null, null, null);
+    }
+
+    // Used when restoring a board; passing null for a plane allocates a blank one
+    PackedMinefieldStorage(int width, int height, long[] mineBits, long[] visibleBits, long[] flagBits, long[] markerNibbles) {
+        long cells = (long) width * height;
+        if (width <= 0 || height <= 0 || cells > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Invalid board size " + width + "x" + height);
+        this.width = width;
+        this.height = height;
+        this.cellCount = (int) cells;
+        this.mineBits = mineBits != null ? mineBits : new long[bitWords(cellCount)];
+        this.visibleBits = visibleBits != null ? visibleBits : new long[bitWords(cellCount)];
+        this.flagBits = flagBits != null ? flagBits : new long[bitWords(cellCount)];
+        this.markerNibbles = markerNibbles != null ? markerNibbles : new long[nibbleWords(cellCount)];
+    }
+
+    static int bitWords(int cells) {
+        return (cells + 63) >>> 6;
+    }
+
+    static int nibbleWords(int cells) {
+        return (cells + 15) >>> 4;
+    }
+
+    private int index(int x, int y) {
+        return y * width + x;
+    }
+
+    private static boolean getBit(long[] bits, int i) {
+        return (bits[i >>> 6] & (1L << i)) != 0; // shifts on a long only use the lowest 6 bits of i
+    }
+
+    private static void setBit(long[] bits, int i, boolean value) {
+        if (value) bits[i >>> 6] |= 1L << i;
+        else bits[i >>> 6] &= ~(1L << i);
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    public int getCellCount() {
+        return cellCount;
+    }
+
+    @Override
+    public boolean isMine(int x, int y) {
+        return getBit(mineBits, index(x, y));
+    }
+
+    @Override
+    public void setMine(int x, int y, boolean mine) {
+        setBit(mineBits, index(x, y), mine);
+    }
+
+    @Override
+    public int getMarker(int x, int y) {
+        int i = index(x, y);
+        return (int) (markerNibbles[i >>> 4] >>> ((i & 15) << 2)) & 0xF;
+    }
+
+    @Override
+    public void setMarker(int x, int y, int marker) {
+        int i = index(x, y);
+        int shift = (i & 15) << 2;
+        markerNibbles[i >>> 4] = (markerNibbles[i >>> 4] & ~(0xFL << shift)) | ((long) (marker & 0xF) << shift);
+    }
+
+    @Override
+    public MinefieldState.CellFogType getFog(int x, int y) {
+        int i = index(x, y);
+        if (getBit(flagBits, i)) return MinefieldState.CellFogType.FLAGGED;
+        if (getBit(visibleBits, i)) return MinefieldState.CellFogType.VISIBLE;
+        return MinefieldState.CellFogType.HIDDEN;
+    }
+
+    @Override
+    public void setFog(int x, int y, MinefieldState.CellFogType fog) {
+        int i = index(x, y);
+        setBit(visibleBits, i, fog == MinefieldState.CellFogType.VISIBLE);
+        setBit(flagBits, i, fog == MinefieldState.CellFogType.FLAGGED);
+    }
+
+    //region Bulk Operations
+
+    private static long countBits(long[] bits) {
+        long count = 0;
+        for (long word : bits) count += Long.bitCount(word);
+        return count;
+    }
+
+    @Override
+    public long countVisible() {
+        return countBits(visibleBits);
+    }
+
+    @Override
+    public long countFlags() {
+        return countBits(flagBits);
+    }
+
+    public long countMines() {
+        return countBits(mineBits);
+    }
+
+    // Counts flags that are actually sitting on mines
+    public long countCorrectFlags() {
+        long count = 0;
+        for (int w = 0; w < flagBits.length; w++) count += Long.bitCount(flagBits[w] & mineBits[w]);
+        return count;
+    }
+
+    @Override
+    public long nextHiddenCell(long fromIndex) {
+        if (fromIndex < 0) fromIndex = 0;
+        if (fromIndex >= cellCount) return -1;
+        int w = (int) (fromIndex >>> 6);
+        long hidden = ~(visibleBits[w] | flagBits[w]) & (-1L << fromIndex); // ignore bits before fromIndex
+        while (true) {
+            if (hidden != 0) {
+                long i = ((long) w << 6) + Long.numberOfTrailingZeros(hidden);
+                return i < cellCount ? i : -1; // the padding bits of the last word are never real cells
+            }
+            if (++w >= visibleBits.length) return -1;
+            hidden = ~(visibleBits[w] | flagBits[w]);
+        }
+    }
+
+    //endregion
+}
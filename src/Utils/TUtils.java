@@ -57,6 +57,37 @@ public class TUtils {
         return finalLines;
     }
 
+    // Returns every way of picking k out of n bits as a bitmask, in increasing order.
+    // Each layout comes out exactly once, so this takes C(n, k) steps instead of the n! of permutations().
+    public static int[] combinations(int n, int k) {
+        if (n < 0 || n > 30 || k < 0 || k > n) return new int[0];
+        int[] ret = new int[(int) binomial(n, k)];
+        int mask = (1 << k) - 1;
+        for (int i = 0; i < ret.length; i++) {
+            ret[i] = mask;
+            mask = nextCombination(mask);
+        }
+        return ret;
+    }
+
+    // Gosper's hack: the next bigger number with the same number of set bits
+    public static int nextCombination(int mask) {
+        if (mask == 0) return 0;
+        int lowestBit = mask & -mask;
+        int ripple = mask + lowestBit;
+        return (((ripple ^ mask) >>> 2) / lowestBit) | ripple;
+    }
+
+    public static long binomial(int n, int k) {
+        if (k < 0 || k > n) return 0;
+        k = Math.min(k, n - k);
+        long ret = 1;
+        for (int i = 1; i <= k; i++) {
+            ret = ret * (n - k + i) / i; // Always divides evenly
+        }
+        return ret;
+    }
+
     public static HashSet<String> permutations(String base) {
         return permutations(new StringBuilder(base), "");
     }
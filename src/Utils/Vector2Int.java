@@ -1,7 +1,5 @@
 package Utils;
 
-import java.util.Objects;
-
 public class Vector2Int {
     public int x, y;
     public Vector2Int(int x, int y) {
@@ -11,7 +9,7 @@ public class Vector2Int {
 
     @Override
     public boolean equals(Object obj) {
-        Vector2Int other = (Vector2Int) obj;
+        if (!(obj instanceof Vector2Int other)) return false;
         return other.x == x && other.y == y;
     }
 
@@ -20,8 +18,10 @@ public class Vector2Int {
         return "(" + x + ", " + y + ")";
     }
 
+    // Objects.hash() boxes both ints into a fresh array every call, and its 31 * x + y puts whole diagonals of a
+    // grid into the same bucket. A big odd multiplier keeps every tile of any sane board distinct and spread out.
     @Override
     public int hashCode() {
-        return Objects.hash(x, y);
+        return x * 92821 + y;
     }
 }